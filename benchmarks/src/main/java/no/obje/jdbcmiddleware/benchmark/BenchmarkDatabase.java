@@ -0,0 +1,57 @@
+package no.obje.jdbcmiddleware.benchmark;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+final class BenchmarkDatabase {
+
+    private static final AtomicInteger DATABASE_NUMBER = new AtomicInteger();
+
+    private BenchmarkDatabase() {}
+
+    /**
+     * Creates a new in-memory database with an empty customer table. Every call gets its own database, so that
+     * benchmark threads do not interfere with each other.
+     */
+    static JDBCDataSource create() throws SQLException {
+        final JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setDatabase("jdbc:hsqldb:mem:benchmark" + DATABASE_NUMBER.incrementAndGet());
+        try(Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(
+                    "CREATE TABLE customer (" +
+                            "id INTEGER GENERATED BY DEFAULT AS IDENTITY(START WITH 1) PRIMARY KEY, " +
+                            "name VARCHAR(128) NOT NULL, " +
+                            "balance BIGINT NOT NULL, " +
+                            "rating DOUBLE, " +
+                            "active BOOLEAN NOT NULL, " +
+                            "registered DATE NOT NULL)"
+            );
+        }
+        return dataSource;
+    }
+
+    static void insertCustomers(JDBCDataSource dataSource, int numberOfCustomers) throws SQLException {
+        try(Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO customer (name, balance, rating, active, registered) VALUES (?, ?, ?, ?, ?)"
+            )) {
+            for(int i = 0; i < numberOfCustomers; i++) {
+                statement.setString(1, "Customer " + i);
+                statement.setLong(2, i * 100L);
+                statement.setDouble(3, i % 5);
+                statement.setBoolean(4, i % 2 == 0);
+                statement.setDate(5, Date.valueOf(LocalDate.of(2018, 1, 1).plusDays(i % 365)));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package no.obje.jdbcmiddleware.benchmark;
+
+import no.obje.jdbcmiddleware.domain.QueryResult;
+
+import java.time.LocalDate;
+
+final class Customer {
+
+    private final long id;
+    private final String name;
+    private final long balance;
+    private final double rating;
+    private final boolean active;
+    private final LocalDate registered;
+
+    private Customer(long id, String name, long balance, double rating, boolean active, LocalDate registered) {
+        this.id = id;
+        this.name = name;
+        this.balance = balance;
+        this.rating = rating;
+        this.active = active;
+        this.registered = registered;
+    }
+
+    static Customer map(QueryResult queryResult) {
+        return new Customer(
+                queryResult.requireLong("id"),
+                queryResult.requireString("name"),
+                queryResult.requireLong("balance"),
+                queryResult.getDouble("rating").orElse(0D),
+                queryResult.requireBoolean("active"),
+                queryResult.requireDate("registered")
+        );
+    }
+
+    long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,57 @@
+package no.obje.jdbcmiddleware.benchmark;
+
+import no.obje.jdbcmiddleware.service.ConnectionManager;
+import no.obje.jdbcmiddleware.service.JdbcService;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures argument binding and inserts. Every iteration runs inside a transaction which is rolled back afterwards,
+ * so that the table does not grow across iterations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class InsertBenchmark {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO customer (name, balance, active, registered) VALUES (?, ?, ?, ?)";
+
+    private final LocalDate registered = LocalDate.of(2018, 1, 1);
+
+    private ConnectionManager connectionManager;
+    private JdbcService jdbcService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connectionManager = new ConnectionManager(BenchmarkDatabase.create());
+        jdbcService = new JdbcService(connectionManager);
+    }
+
+    @Setup(Level.Iteration)
+    public void startTransaction() {
+        connectionManager.startTransaction();
+    }
+
+    @TearDown(Level.Iteration)
+    public void rollbackTransaction() {
+        connectionManager.rollbackTransaction();
+    }
+
+    @Benchmark
+    public void insert() {
+        jdbcService.insert(INSERT_SQL, "Jon Snow", 100L, true, registered);
+    }
+
+    @Benchmark
+    public Long insertAndReturnKey() {
+        return jdbcService.insertAndReturnKey(INSERT_SQL, "id", "Jon Snow", 100L, true, registered);
+    }
+}
@@ -0,0 +1,61 @@
+package no.obje.jdbcmiddleware.benchmark;
+
+import no.obje.jdbcmiddleware.service.ConnectionManager;
+import no.obje.jdbcmiddleware.service.JdbcService;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single row lookups and list mapping. Every iteration runs inside a transaction, so that all invocations
+ * share one connection and the numbers reflect the library rather than connection setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class QueryBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int rows;
+
+    private ConnectionManager connectionManager;
+    private JdbcService jdbcService;
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        final JDBCDataSource dataSource = BenchmarkDatabase.create();
+        BenchmarkDatabase.insertCustomers(dataSource, rows);
+        connectionManager = new ConnectionManager(dataSource);
+        jdbcService = new JdbcService(connectionManager);
+    }
+
+    @Setup(Level.Iteration)
+    public void startTransaction() {
+        connectionManager.startTransaction();
+    }
+
+    @TearDown(Level.Iteration)
+    public void rollbackTransaction() {
+        connectionManager.rollbackTransaction();
+    }
+
+    @Benchmark
+    public Optional<Customer> queryForSingle() {
+        nextId = nextId % rows + 1;
+        return jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", Customer::map, nextId);
+    }
+
+    @Benchmark
+    public List<Customer> queryForList() {
+        return jdbcService.queryForList("SELECT * FROM customer", Customer::map);
+    }
+}
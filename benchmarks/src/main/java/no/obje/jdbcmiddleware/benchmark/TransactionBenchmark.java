@@ -0,0 +1,56 @@
+package no.obje.jdbcmiddleware.benchmark;
+
+import no.obje.jdbcmiddleware.service.ConnectionManager;
+import no.obje.jdbcmiddleware.service.JdbcService;
+import no.obje.jdbcmiddleware.service.TransactionManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a typical unit of work through the transaction manager, including getting a connection from the data
+ * source for every transaction. The row is deleted again, so that the table does not grow.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class TransactionBenchmark {
+
+    private final LocalDate registered = LocalDate.of(2018, 1, 1);
+
+    private TransactionManager transactionManager;
+    private JdbcService jdbcService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        final ConnectionManager connectionManager = new ConnectionManager(BenchmarkDatabase.create());
+        transactionManager = new TransactionManager(connectionManager);
+        jdbcService = new JdbcService(connectionManager);
+    }
+
+    @Benchmark
+    public Optional<Customer> insertUpdateSelectDelete() {
+        return transactionManager.doInTransaction(() -> {
+            final Long id = jdbcService.insertAndReturnKey(
+                    "INSERT INTO customer (name, balance, active, registered) VALUES (?, ?, ?, ?)",
+                    "id",
+                    "Jon Snow",
+                    100L,
+                    true,
+                    registered
+            );
+            jdbcService.updateSingle("UPDATE customer SET balance = ? WHERE id = ?", 200L, id);
+            final Optional<Customer> customer =
+                    jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", Customer::map, id);
+            jdbcService.deleteSingle("DELETE FROM customer WHERE id = ?", id);
+            return customer;
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package no.obje.jdbcmiddleware.domain;
+
+import java.io.Closeable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+public interface ArgumentBinder<T> {
+    void bind(PreparedStatement statement, int index, T value) throws SQLException;
+
+    /**
+     * Binds the value while a statement is being prepared for execution. Binders which open a stream for the value,
+     * such as a file, should override this and add the stream to the given list, which is closed once the statement
+     * has run, whether or not the driver read the stream to the end.
+     *
+     * @param openedStreams collects the streams opened by the binder, or null if nobody will close them
+     */
+    default void bind(PreparedStatement statement, int index, T value, List<Closeable> openedStreams)
+            throws SQLException {
+        bind(statement, index, value);
+    }
+}
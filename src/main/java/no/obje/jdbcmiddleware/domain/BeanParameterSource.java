@@ -0,0 +1,62 @@
+package no.obje.jdbcmiddleware.domain;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+final class BeanParameterSource implements ParameterSource {
+
+    private static final ClassValue<Map<String, Method>> GETTERS = new ClassValue<Map<String, Method>>() {
+        @Override
+        protected Map<String, Method> computeValue(Class<?> type) {
+            try {
+                final Map<String, Method> getters = new HashMap<>();
+                for(PropertyDescriptor property : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                    if(property.getReadMethod() != null && property.getReadMethod().getDeclaringClass() != Object.class) {
+                        property.getReadMethod().setAccessible(true);
+                        getters.put(property.getName(), property.getReadMethod());
+                    }
+                }
+                return Collections.unmodifiableMap(getters);
+            }
+            catch(IntrospectionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    private final Object bean;
+    private final Map<String, Method> getters;
+
+    BeanParameterSource(Object bean) {
+        this.bean = bean;
+        this.getters = GETTERS.get(bean.getClass());
+    }
+
+    @Override
+    public boolean hasValue(String name) {
+        return getters.containsKey(name);
+    }
+
+    @Override
+    public Object getValue(String name) {
+        final Method getter = getters.get(name);
+        if(getter == null) {
+            throw new IllegalArgumentException("No property named '" + name + "' on " + bean.getClass());
+        }
+        try {
+            return getter.invoke(bean);
+        }
+        catch(IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        catch(InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
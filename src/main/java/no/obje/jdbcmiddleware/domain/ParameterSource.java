@@ -0,0 +1,36 @@
+package no.obje.jdbcmiddleware.domain;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Supplies the values of named parameters, such as {@code :name} in {@code SELECT * FROM customer WHERE name = :name}.
+ */
+public interface ParameterSource {
+
+    boolean hasValue(String name);
+
+    Object getValue(String name);
+
+    static ParameterSource of(Map<String, ?> values) {
+        Objects.requireNonNull(values);
+        return new ParameterSource() {
+            @Override
+            public boolean hasValue(String name) {
+                return values.containsKey(name);
+            }
+
+            @Override
+            public Object getValue(String name) {
+                return values.get(name);
+            }
+        };
+    }
+
+    /**
+     * @param bean an object whose bean properties, read through their getters, are the parameters
+     */
+    static ParameterSource ofBean(Object bean) {
+        return new BeanParameterSource(Objects.requireNonNull(bean));
+    }
+}
@@ -1,18 +1,44 @@
 package no.obje.jdbcmiddleware.domain;
 
 import no.obje.jdbcmiddleware.util.ExceptionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.sql.Date;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Function;
 import java.util.function.Supplier;
 
+/**
+ * A view of the current row of a result set. A single instance is shared by every row of a result set, so that column
+ * labels only have to be resolved to column indexes once, and should therefore not be held on to by row mappers.
+ */
 public class QueryResult {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryResult.class);
+
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
     private final ResultSet resultSet;
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private String[] columnLabels;
+    private int[] columnTypes;
+    private ByteBuffer transferBuffer;
 
     public QueryResult(ResultSet resultSet) {
         this.resultSet = Objects.requireNonNull(resultSet);
@@ -23,43 +49,242 @@ public class QueryResult {
     }
 
     public Optional<String> getString(String columnName) {
-        return Optional.ofNullable(ExceptionUtil.soften(() -> resultSet.getString(columnName)));
+        final int columnIndex = findColumnIndex(columnName);
+        return Optional.ofNullable(ExceptionUtil.soften(() ->
+                columnIndex > 0 ? resultSet.getString(columnIndex) : resultSet.getString(columnName)
+        ));
     }
 
     public Integer requireInteger(String columnName) {
-        return getInteger(columnName).orElseThrow(getMissingColumnException(columnName));
+        return requireInt(columnName);
     }
 
     public Optional<Integer> getInteger(String columnName) {
-        return emptyOrValueIfNotWasNull(rs -> ExceptionUtil.soften(() -> rs.getInt(columnName)));
+        final int value = getIntOrDefault(columnName, 0);
+        return wasNull() ? Optional.empty() : Optional.of(value);
     }
 
     public Double requireDouble(String columnName) {
-        return getDouble(columnName).orElseThrow(getMissingColumnException(columnName));
+        final double value = getDoubleOrDefault(columnName, 0D);
+        if(wasNull()) {
+            throw missingColumnException(columnName);
+        }
+        return value;
     }
 
     public Optional<Double> getDouble(String columnName) {
-        return emptyOrValueIfNotWasNull(rs -> ExceptionUtil.soften(() -> rs.getDouble(columnName)));
+        final double value = getDoubleOrDefault(columnName, 0D);
+        return wasNull() ? Optional.empty() : Optional.of(value);
     }
 
     public Long requireLong(String columnName) {
-        return getLong(columnName).orElseThrow(getMissingColumnException(columnName));
+        final long value = getLongOrDefault(columnName, 0L);
+        if(wasNull()) {
+            throw missingColumnException(columnName);
+        }
+        return value;
     }
 
     public Optional<Long> getLong(String columnName) {
-        return emptyOrValueIfNotWasNull(rs -> ExceptionUtil.soften(() -> rs.getLong(columnName)));
+        final long value = getLongOrDefault(columnName, 0L);
+        return wasNull() ? Optional.empty() : Optional.of(value);
     }
 
     public boolean requireBoolean(String columnName) {
-        return getBoolean(columnName).orElseThrow(getMissingColumnException(columnName));
+        final boolean value = getBooleanOrDefault(columnName, false);
+        if(wasNull()) {
+            throw missingColumnException(columnName);
+        }
+        return value;
     }
 
     public Optional<Boolean> getBoolean(String columnName) {
-        return emptyOrValueIfNotWasNull(rs -> ExceptionUtil.soften(() -> rs.getBoolean(columnName)));
+        final boolean value = getBooleanOrDefault(columnName, false);
+        return wasNull() ? Optional.empty() : Optional.of(value);
+    }
+
+    /*
+     * The primitive accessors below neither box nor allocate, and are meant for mapping large or wide results.
+     */
+
+    public int requireInt(String columnName) {
+        final int value = getIntOrDefault(columnName, 0);
+        if(wasNull()) {
+            throw missingColumnException(columnName);
+        }
+        return value;
+    }
+
+    public int requireInt(int columnIndex) {
+        final int value = getIntOrDefault(columnIndex, 0);
+        if(wasNull()) {
+            throw missingColumnException(columnIndex);
+        }
+        return value;
+    }
+
+    public long requireLong(int columnIndex) {
+        final long value = getLongOrDefault(columnIndex, 0L);
+        if(wasNull()) {
+            throw missingColumnException(columnIndex);
+        }
+        return value;
+    }
+
+    public double requireDouble(int columnIndex) {
+        final double value = getDoubleOrDefault(columnIndex, 0D);
+        if(wasNull()) {
+            throw missingColumnException(columnIndex);
+        }
+        return value;
+    }
+
+    public boolean requireBoolean(int columnIndex) {
+        final boolean value = getBooleanOrDefault(columnIndex, false);
+        if(wasNull()) {
+            throw missingColumnException(columnIndex);
+        }
+        return value;
+    }
+
+    public int getIntOrDefault(String columnName, int defaultValue) {
+        final int columnIndex = findColumnIndex(columnName);
+        try {
+            final int value = columnIndex > 0 ? resultSet.getInt(columnIndex) : resultSet.getInt(columnName);
+            return resultSet.wasNull() ? defaultValue : value;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int getIntOrDefault(int columnIndex, int defaultValue) {
+        try {
+            final int value = resultSet.getInt(columnIndex);
+            return resultSet.wasNull() ? defaultValue : value;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getLongOrDefault(String columnName, long defaultValue) {
+        final int columnIndex = findColumnIndex(columnName);
+        try {
+            final long value = columnIndex > 0 ? resultSet.getLong(columnIndex) : resultSet.getLong(columnName);
+            return resultSet.wasNull() ? defaultValue : value;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getLongOrDefault(int columnIndex, long defaultValue) {
+        try {
+            final long value = resultSet.getLong(columnIndex);
+            return resultSet.wasNull() ? defaultValue : value;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public double getDoubleOrDefault(String columnName, double defaultValue) {
+        final int columnIndex = findColumnIndex(columnName);
+        try {
+            final double value = columnIndex > 0 ? resultSet.getDouble(columnIndex) : resultSet.getDouble(columnName);
+            return resultSet.wasNull() ? defaultValue : value;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public double getDoubleOrDefault(int columnIndex, double defaultValue) {
+        try {
+            final double value = resultSet.getDouble(columnIndex);
+            return resultSet.wasNull() ? defaultValue : value;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean getBooleanOrDefault(String columnName, boolean defaultValue) {
+        final int columnIndex = findColumnIndex(columnName);
+        try {
+            final boolean value = columnIndex > 0 ? resultSet.getBoolean(columnIndex) : resultSet.getBoolean(columnName);
+            return resultSet.wasNull() ? defaultValue : value;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean getBooleanOrDefault(int columnIndex, boolean defaultValue) {
+        try {
+            final boolean value = resultSet.getBoolean(columnIndex);
+            return resultSet.wasNull() ? defaultValue : value;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean isNull(String columnName) {
+        final int columnIndex = findColumnIndex(columnName);
+        if(columnIndex > 0) {
+            return isNull(columnIndex);
+        }
+        try {
+            resultSet.getObject(columnName);
+            return resultSet.wasNull();
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads numeric and boolean columns with their primitive getter, so that checking them neither boxes nor allocates.
+     * Other columns are read as objects.
+     */
+    public boolean isNull(int columnIndex) {
+        try {
+            switch(getColumnType(columnIndex)) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    resultSet.getLong(columnIndex);
+                    break;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    resultSet.getDouble(columnIndex);
+                    break;
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    resultSet.getBoolean(columnIndex);
+                    break;
+                default:
+                    resultSet.getObject(columnIndex);
+                    break;
+            }
+            return resultSet.wasNull();
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     public Optional<LocalDate> getDate(String columnName) {
-        return Optional.ofNullable(ExceptionUtil.soften(() -> resultSet.getDate(columnName))).map(Date::toLocalDate);
+        final int columnIndex = findColumnIndex(columnName);
+        return Optional.ofNullable(ExceptionUtil.soften(() ->
+                columnIndex > 0 ? resultSet.getDate(columnIndex) : resultSet.getDate(columnName)
+        )).map(Date::toLocalDate);
     }
 
     public LocalDate requireDate(String columnName) {
@@ -67,12 +292,140 @@ public class QueryResult {
     }
 
     private Supplier<IllegalStateException> getMissingColumnException(String columnName) {
-        return () -> new IllegalStateException("Required column with name '" + columnName + "' was not present");
+        return () -> missingColumnException(columnName);
+    }
+
+    private IllegalStateException missingColumnException(String columnName) {
+        return new IllegalStateException("Required column with name '" + columnName + "' was not present");
+    }
+
+    private IllegalStateException missingColumnException(int columnIndex) {
+        return new IllegalStateException("Required column with index " + columnIndex + " was not present");
+    }
+
+    private boolean wasNull() {
+        try {
+            return resultSet.wasNull();
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Resolves the given column label to its index, once per label. Returns 0 when the label can not be resolved
+     * through the result set meta data, in which case the value is read by label and the driver decides the outcome.
+     */
+    private int findColumnIndex(String columnName) {
+        final Integer columnIndex = columnIndexes.get(columnName);
+        if(columnIndex != null) {
+            return columnIndex;
+        }
+        final int resolvedColumnIndex = resolveColumnIndex(columnName);
+        columnIndexes.put(columnName, resolvedColumnIndex);
+        return resolvedColumnIndex;
+    }
+
+    private int resolveColumnIndex(String columnName) {
+        if(columnLabels == null) {
+            readColumnMetaData();
+        }
+        for(int i = 0; i < columnLabels.length; i++) {
+            if(columnLabels[i] != null && columnLabels[i].equalsIgnoreCase(columnName)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the SQL type of the given column, or {@link Types#OTHER} if it can not be read from the meta data
+     */
+    private int getColumnType(int columnIndex) {
+        if(columnTypes == null) {
+            readColumnMetaData();
+        }
+        return columnIndex > 0 && columnIndex <= columnTypes.length ? columnTypes[columnIndex - 1] : Types.OTHER;
+    }
+
+    private void readColumnMetaData() {
+        try {
+            final ResultSetMetaData metaData = resultSet.getMetaData();
+            if(metaData == null) {
+                columnLabels = new String[0];
+                columnTypes = new int[0];
+                return;
+            }
+            final String[] labels = new String[metaData.getColumnCount()];
+            final int[] types = new int[labels.length];
+            for(int i = 0; i < labels.length; i++) {
+                labels[i] = metaData.getColumnLabel(i + 1);
+                types[i] = metaData.getColumnType(i + 1);
+            }
+            columnLabels = labels;
+            columnTypes = types;
+        }
+        catch(SQLException e) {
+            LOGGER.debug("Unable to read result set meta data, columns will be looked up by label", e);
+            columnLabels = new String[0];
+            columnTypes = new int[0];
+        }
+    }
+
+    /**
+     * Streams the value of a binary or BLOB column, without reading it into memory. The stream reads from the current
+     * row, and is only valid until the row mapper returns.
+     */
+    public Optional<InputStream> getBinaryStream(String columnName) {
+        final int columnIndex = findColumnIndex(columnName);
+        return Optional.ofNullable(ExceptionUtil.soften(() ->
+                columnIndex > 0 ? resultSet.getBinaryStream(columnIndex) : resultSet.getBinaryStream(columnName)
+        ));
+    }
+
+    /**
+     * Streams the value of a character or CLOB column, without reading it into memory. The reader reads from the
+     * current row, and is only valid until the row mapper returns.
+     */
+    public Optional<Reader> getCharacterStream(String columnName) {
+        final int columnIndex = findColumnIndex(columnName);
+        return Optional.ofNullable(ExceptionUtil.soften(() ->
+                columnIndex > 0 ? resultSet.getCharacterStream(columnIndex) : resultSet.getCharacterStream(columnName)
+        ));
     }
 
-    private <T> Optional<T> emptyOrValueIfNotWasNull(Function<ResultSet, T> function) {
-        T value = function.apply(resultSet);
-        return ExceptionUtil.soften(resultSet::wasNull) ? Optional.empty() : Optional.of(value);
+    /**
+     * Copies the value of a binary or BLOB column to the given channel, through a direct buffer reused for every row of
+     * the result set. The driver only offers the value as a stream, which is read into the direct buffer through
+     * {@link Channels#newChannel(InputStream)}, copying it once on the way in. Writing the direct buffer to a file or
+     * socket channel needs no further copy, where a heap buffer would be copied into a temporary direct buffer by the
+     * channel. The channel is left open.
+     *
+     * @return the number of bytes copied, or -1 if the value is null
+     */
+    public long transferTo(String columnName, WritableByteChannel channel) {
+        final Optional<InputStream> binaryStream = getBinaryStream(columnName);
+        if(!binaryStream.isPresent()) {
+            return -1;
+        }
+        if(transferBuffer == null) {
+            transferBuffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+        }
+        long transferred = 0;
+        try(ReadableByteChannel in = Channels.newChannel(binaryStream.get())) {
+            transferBuffer.clear();
+            while(in.read(transferBuffer) != -1) {
+                transferBuffer.flip();
+                while(transferBuffer.hasRemaining()) {
+                    transferred += channel.write(transferBuffer);
+                }
+                transferBuffer.clear();
+            }
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return transferred;
     }
 
     public ResultSet getResultSet() {
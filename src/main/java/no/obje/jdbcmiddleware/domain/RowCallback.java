@@ -0,0 +1,5 @@
+package no.obje.jdbcmiddleware.domain;
+
+public interface RowCallback {
+    void processRow(QueryResult queryResult);
+}
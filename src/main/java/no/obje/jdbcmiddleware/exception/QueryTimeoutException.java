@@ -0,0 +1,7 @@
+package no.obje.jdbcmiddleware.exception;
+
+public class QueryTimeoutException extends RuntimeException {
+    public QueryTimeoutException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
+}
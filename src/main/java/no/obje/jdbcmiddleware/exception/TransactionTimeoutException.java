@@ -0,0 +1,7 @@
+package no.obje.jdbcmiddleware.exception;
+
+public class TransactionTimeoutException extends RuntimeException {
+    public TransactionTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,92 @@
+package no.obje.jdbcmiddleware.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds. Values are counted in log-linear buckets, 16 per power of two,
+ * so recording is a couple of atomic increments and reported values are within 6.25% of the recorded ones.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        final long value = Math.max(0L, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        long currentMax = max.get();
+        while(value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        final long numberOfValues = count.sum();
+        return numberOfValues == 0 ? 0D : (double)total.sum() / numberOfValues;
+    }
+
+    /**
+     * @param percentile a percentile between 0 and 100
+     * @return the highest value in the bucket containing the given percentile, never more than the recorded max
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(percentile < 0D || percentile > 100D) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        final long[] snapshot = new long[BUCKETS];
+        long numberOfValues = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            numberOfValues += snapshot[i];
+        }
+        if(numberOfValues == 0) {
+            return 0L;
+        }
+        final long rank = Math.max(1L, (long)Math.ceil(percentile / 100D * numberOfValues));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if(seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketOf(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int bucket) {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = bucket % SUB_BUCKETS;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
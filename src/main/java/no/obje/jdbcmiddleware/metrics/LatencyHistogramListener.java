@@ -0,0 +1,71 @@
+package no.obje.jdbcmiddleware.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link LatencyHistogram} of the total time per distinct SQL string, as well as of the time spent acquiring
+ * connections. Once the configured number of distinct SQL strings has been seen, further statements are recorded
+ * under {@link #OTHER_STATEMENTS}, so that dynamically built SQL can not grow the listener without bounds.
+ */
+public class LatencyHistogramListener implements QueryListener {
+
+    public static final String OTHER_STATEMENTS = "<other>";
+
+    private static final int DEFAULT_MAX_STATEMENTS = 1000;
+
+    private final int maxStatements;
+    private final Map<String, LatencyHistogram> statementHistograms = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> failureHistograms = new ConcurrentHashMap<>();
+    private final LatencyHistogram connectionAcquireHistogram = new LatencyHistogram();
+
+    public LatencyHistogramListener() {
+        this(DEFAULT_MAX_STATEMENTS);
+    }
+
+    public LatencyHistogramListener(int maxStatements) {
+        if(maxStatements < 1) {
+            throw new IllegalArgumentException("Max statements must be a positive number");
+        }
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    public void connectionAcquired(long acquireNanos) {
+        connectionAcquireHistogram.record(acquireNanos);
+    }
+
+    @Override
+    public void queryExecuted(QueryEvent event) {
+        final Map<String, LatencyHistogram> histograms = event.isSuccessful() ? statementHistograms : failureHistograms;
+        histogramFor(histograms, event.getSql()).record(event.getTotalNanos());
+    }
+
+    /**
+     * @return latency histograms of successful statements, keyed by SQL
+     */
+    public Map<String, LatencyHistogram> getStatementHistograms() {
+        return Collections.unmodifiableMap(statementHistograms);
+    }
+
+    /**
+     * @return latency histograms of failed statements, keyed by SQL
+     */
+    public Map<String, LatencyHistogram> getFailureHistograms() {
+        return Collections.unmodifiableMap(failureHistograms);
+    }
+
+    public LatencyHistogram getConnectionAcquireHistogram() {
+        return connectionAcquireHistogram;
+    }
+
+    private LatencyHistogram histogramFor(Map<String, LatencyHistogram> histograms, String sql) {
+        final LatencyHistogram histogram = histograms.get(sql);
+        if(histogram != null) {
+            return histogram;
+        }
+        final String key = histograms.size() < maxStatements ? sql : OTHER_STATEMENTS;
+        return histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+}
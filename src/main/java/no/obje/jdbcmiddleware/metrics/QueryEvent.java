@@ -0,0 +1,80 @@
+package no.obje.jdbcmiddleware.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Timings and outcome of a single statement. The prepare phase includes binding of arguments, and the map phase is
+ * the time spent reading and mapping rows after the query was executed.
+ */
+public final class QueryEvent {
+
+    private final String sql;
+    private final List<Object> args;
+    private final long prepareNanos;
+    private final long executeNanos;
+    private final long mapNanos;
+    private final int rowCount;
+    private final Throwable failure;
+
+    public QueryEvent(
+            String sql,
+            List<Object> args,
+            long prepareNanos,
+            long executeNanos,
+            long mapNanos,
+            int rowCount,
+            Throwable failure
+    ) {
+        this.sql = sql;
+        this.args = Collections.unmodifiableList(args);
+        this.prepareNanos = prepareNanos;
+        this.executeNanos = executeNanos;
+        this.mapNanos = mapNanos;
+        this.rowCount = rowCount;
+        this.failure = failure;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the arguments bound to the statement, empty for batches
+     */
+    public List<Object> getArgs() {
+        return args;
+    }
+
+    public long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    public long getMapNanos() {
+        return mapNanos;
+    }
+
+    public long getTotalNanos() {
+        return prepareNanos + executeNanos + mapNanos;
+    }
+
+    /**
+     * @return the number of rows read for queries, or the number of rows affected for updates
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    public Optional<Throwable> getFailure() {
+        return Optional.ofNullable(failure);
+    }
+}
@@ -0,0 +1,47 @@
+package no.obje.jdbcmiddleware.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Receives timings of the work done by {@code ConnectionManager} and {@code JdbcService}. Listeners are invoked on
+ * the thread doing the work, so implementations must be thread safe and should return quickly.
+ */
+public interface QueryListener {
+
+    QueryListener NONE = new QueryListener() {};
+
+    /**
+     * Invoked every time a connection has been obtained from the data source.
+     *
+     * @param acquireNanos the time spent waiting for the connection, in nanoseconds
+     */
+    default void connectionAcquired(long acquireNanos) {}
+
+    /**
+     * Invoked after every statement, whether it succeeded or not.
+     */
+    default void queryExecuted(QueryEvent event) {}
+
+    /**
+     * Combines the given listeners into one, which notifies them in order.
+     */
+    static QueryListener of(QueryListener... listeners) {
+        final List<QueryListener> all = Arrays.asList(listeners.clone());
+        return new QueryListener() {
+            @Override
+            public void connectionAcquired(long acquireNanos) {
+                for(QueryListener listener : all) {
+                    listener.connectionAcquired(acquireNanos);
+                }
+            }
+
+            @Override
+            public void queryExecuted(QueryEvent event) {
+                for(QueryListener listener : all) {
+                    listener.queryExecuted(event);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,175 @@
+package no.obje.jdbcmiddleware.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs executed statements, either only those slower than a threshold or a random sample of them. The statements
+ * which are selected are handed to a bounded queue and formatted and written by a single background thread, so
+ * logging never blocks the thread running the statement. When the queue is full, records are dropped and counted.
+ */
+public final class QueryLog implements QueryListener, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryLog.class);
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private enum Mode { OFF, SLOW, SAMPLED }
+
+    private final Mode mode;
+    private final long thresholdNanos;
+    private final int sampleRate;
+    private final BlockingQueue<QueryEvent> records;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+
+    private QueryLog(Mode mode, long thresholdNanos, int sampleRate, int capacity) {
+        this.mode = mode;
+        this.thresholdNanos = thresholdNanos;
+        this.sampleRate = sampleRate;
+        if(mode == Mode.OFF) {
+            this.records = null;
+            this.writer = null;
+        }
+        else {
+            this.records = new ArrayBlockingQueue<>(capacity);
+            this.writer = new Thread(this::writeRecords, "jdbc-middleware-query-log");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+    }
+
+    public static QueryLog off() {
+        return new QueryLog(Mode.OFF, 0L, 0, 0);
+    }
+
+    /**
+     * Logs every statement which took at least the given time, at WARN level.
+     */
+    public static QueryLog slowerThan(Duration threshold) {
+        return slowerThan(threshold, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of records waiting to be written
+     */
+    public static QueryLog slowerThan(Duration threshold, int capacity) {
+        Objects.requireNonNull(threshold);
+        if(threshold.isNegative()) {
+            throw new IllegalArgumentException("Threshold cannot be negative");
+        }
+        return new QueryLog(Mode.SLOW, threshold.toNanos(), 0, validCapacity(capacity));
+    }
+
+    /**
+     * Logs a random sample of on average one in every given number of statements, at INFO level.
+     */
+    public static QueryLog sampled(int oneIn) {
+        return sampled(oneIn, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of records waiting to be written
+     */
+    public static QueryLog sampled(int oneIn, int capacity) {
+        if(oneIn < 1) {
+            throw new IllegalArgumentException("Sample rate must be a positive number");
+        }
+        return new QueryLog(Mode.SAMPLED, 0L, oneIn, validCapacity(capacity));
+    }
+
+    @Override
+    public void queryExecuted(QueryEvent event) {
+        if(!shouldLog(event)) {
+            return;
+        }
+        if(!records.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * @return the number of records dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the background thread after writing the records already queued.
+     */
+    @Override
+    public void close() {
+        if(writer == null) {
+            return;
+        }
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean shouldLog(QueryEvent event) {
+        switch(mode) {
+            case SLOW:
+                return event.getTotalNanos() >= thresholdNanos;
+            case SAMPLED:
+                return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+            default:
+                return false;
+        }
+    }
+
+    private void writeRecords() {
+        try {
+            while(!Thread.currentThread().isInterrupted()) {
+                write(records.take());
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        QueryEvent event;
+        while((event = records.poll()) != null) {
+            write(event);
+        }
+    }
+
+    private void write(QueryEvent event) {
+        try {
+            final double millis = event.getTotalNanos() / 1_000_000D;
+            if(mode == Mode.SLOW) {
+                LOGGER.warn(
+                        "Slow query: '{}' with values {} took {} ms, {} rows, successful: {}",
+                        event.getSql(), event.getArgs(), millis, event.getRowCount(), event.isSuccessful()
+                );
+            }
+            else {
+                LOGGER.info(
+                        "Executed query: '{}' with values {} in {} ms, {} rows, successful: {}",
+                        event.getSql(), event.getArgs(), millis, event.getRowCount(), event.isSuccessful()
+                );
+            }
+        }
+        catch(RuntimeException e) {
+            LOGGER.debug("Unable to write query log record", e);
+        }
+    }
+
+    private static int validCapacity(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be a positive number");
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,202 @@
+package no.obje.jdbcmiddleware.pool;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration of a {@link PooledDataSource}. Instances are immutable, every {@code with} method returns a copy.
+ */
+public final class PoolConfig {
+
+    private static final PoolConfig DEFAULTS = new PoolConfig(
+            2,
+            10,
+            Duration.ofMinutes(30),
+            Duration.ofSeconds(30),
+            Duration.ofSeconds(5),
+            Duration.ofMillis(500),
+            Duration.ofSeconds(30)
+    );
+
+    private final int minSize;
+    private final int maxSize;
+    private final Duration maxLifetime;
+    private final Duration connectionTimeout;
+    private final Duration validationTimeout;
+    private final Duration validationSkipWindow;
+    private final Duration housekeepingInterval;
+
+    private PoolConfig(
+            int minSize,
+            int maxSize,
+            Duration maxLifetime,
+            Duration connectionTimeout,
+            Duration validationTimeout,
+            Duration validationSkipWindow,
+            Duration housekeepingInterval
+    ) {
+        if(minSize < 0) {
+            throw new IllegalArgumentException("Min size cannot be negative");
+        }
+        if(maxSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("Max size must be a positive number, and at least min size");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxLifetime = requirePositive(maxLifetime, "Max lifetime");
+        this.connectionTimeout = requirePositive(connectionTimeout, "Connection timeout");
+        this.validationTimeout = requirePositive(validationTimeout, "Validation timeout");
+        this.validationSkipWindow = Objects.requireNonNull(validationSkipWindow);
+        this.housekeepingInterval = requirePositive(housekeepingInterval, "Housekeeping interval");
+    }
+
+    /**
+     * 2 to 10 connections, retired after 30 minutes, waiting at most 30 seconds for a connection, validating
+     * connections which have been idle for more than 500 milliseconds, and housekeeping every 30 seconds.
+     */
+    public static PoolConfig defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param minSize the number of connections opened when the pool is created, and kept open by housekeeping as
+     *                connections are retired
+     */
+    public PoolConfig withMinSize(int minSize) {
+        return new PoolConfig(
+                minSize,
+                maxSize,
+                maxLifetime,
+                connectionTimeout,
+                validationTimeout,
+                validationSkipWindow,
+                housekeepingInterval
+        );
+    }
+
+    /**
+     * @param maxSize the maximum number of connections, idle or in use
+     */
+    public PoolConfig withMaxSize(int maxSize) {
+        return new PoolConfig(
+                minSize,
+                maxSize,
+                maxLifetime,
+                connectionTimeout,
+                validationTimeout,
+                validationSkipWindow,
+                housekeepingInterval
+        );
+    }
+
+    /**
+     * @param maxLifetime the age at which a connection is closed instead of being handed out or returned to the pool
+     */
+    public PoolConfig withMaxLifetime(Duration maxLifetime) {
+        return new PoolConfig(
+                minSize,
+                maxSize,
+                maxLifetime,
+                connectionTimeout,
+                validationTimeout,
+                validationSkipWindow,
+                housekeepingInterval
+        );
+    }
+
+    /**
+     * @param connectionTimeout how long to wait for a connection when all connections are in use
+     */
+    public PoolConfig withConnectionTimeout(Duration connectionTimeout) {
+        return new PoolConfig(
+                minSize,
+                maxSize,
+                maxLifetime,
+                connectionTimeout,
+                validationTimeout,
+                validationSkipWindow,
+                housekeepingInterval
+        );
+    }
+
+    /**
+     * @param validationTimeout how long to wait for a connection to answer {@link java.sql.Connection#isValid(int)}
+     */
+    public PoolConfig withValidationTimeout(Duration validationTimeout) {
+        return new PoolConfig(
+                minSize,
+                maxSize,
+                maxLifetime,
+                connectionTimeout,
+                validationTimeout,
+                validationSkipWindow,
+                housekeepingInterval
+        );
+    }
+
+    /**
+     * @param validationSkipWindow connections used more recently than this are handed out without validation
+     */
+    public PoolConfig withValidationSkipWindow(Duration validationSkipWindow) {
+        return new PoolConfig(
+                minSize,
+                maxSize,
+                maxLifetime,
+                connectionTimeout,
+                validationTimeout,
+                validationSkipWindow,
+                housekeepingInterval
+        );
+    }
+
+    /**
+     * @param housekeepingInterval how often idle connections past their max lifetime are retired, and the pool is
+     *                             refilled to its min size
+     */
+    public PoolConfig withHousekeepingInterval(Duration housekeepingInterval) {
+        return new PoolConfig(
+                minSize,
+                maxSize,
+                maxLifetime,
+                connectionTimeout,
+                validationTimeout,
+                validationSkipWindow,
+                housekeepingInterval
+        );
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public Duration getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public Duration getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public Duration getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    public Duration getValidationSkipWindow() {
+        return validationSkipWindow;
+    }
+
+    public Duration getHousekeepingInterval() {
+        return housekeepingInterval;
+    }
+
+    private static Duration requirePositive(Duration duration, String name) {
+        if(Objects.requireNonNull(duration).isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return duration;
+    }
+}
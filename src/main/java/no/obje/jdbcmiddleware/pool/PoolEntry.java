@@ -0,0 +1,28 @@
+package no.obje.jdbcmiddleware.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A physical connection owned by the pool, together with the state it had when it was opened, so that it can be
+ * reset before being handed out again.
+ */
+final class PoolEntry {
+
+    final Connection connection;
+    final long createdNanos;
+    final boolean initialAutoCommit;
+    final boolean initialReadOnly;
+    final int initialTransactionIsolation;
+    volatile long lastUsedNanos;
+    volatile boolean broken;
+
+    PoolEntry(Connection connection, long createdNanos) throws SQLException {
+        this.connection = connection;
+        this.createdNanos = createdNanos;
+        this.lastUsedNanos = createdNanos;
+        this.initialAutoCommit = connection.getAutoCommit();
+        this.initialReadOnly = connection.isReadOnly();
+        this.initialTransactionIsolation = connection.getTransactionIsolation();
+    }
+}
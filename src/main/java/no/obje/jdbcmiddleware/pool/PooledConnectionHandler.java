@@ -0,0 +1,90 @@
+package no.obje.jdbcmiddleware.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+
+/**
+ * Backs the connection proxy handed out for a single borrow of a pool entry. Closing the proxy returns the entry to
+ * the pool instead of closing it, and any use of the proxy after that fails. A new handler is created for every
+ * borrow, so that stale references can never reach a connection which has been handed to someone else.
+ */
+final class PooledConnectionHandler implements InvocationHandler {
+
+    private final PooledDataSource pool;
+    private final PoolEntry entry;
+    private boolean closed;
+    private boolean autoCommitChanged;
+    private boolean readOnlyChanged;
+    private boolean transactionIsolationChanged;
+
+    PooledConnectionHandler(PooledDataSource pool, PoolEntry entry) {
+        this.pool = pool;
+        this.entry = entry;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch(method.getName()) {
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return closed;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "PooledConnection[" + entry.connection + "]";
+            case "setAutoCommit":
+                autoCommitChanged = true;
+                break;
+            case "setReadOnly":
+                readOnlyChanged = true;
+                break;
+            case "setTransactionIsolation":
+                transactionIsolationChanged = true;
+                break;
+            default:
+                break;
+        }
+        if(closed) {
+            throw new SQLException("Connection is closed");
+        }
+        switch(method.getName()) {
+            case "unwrap":
+                return ((Class<?>)args[0]).isInstance(entry.connection)
+                        ? entry.connection
+                        : entry.connection.unwrap((Class<?>)args[0]);
+            case "isWrapperFor":
+                return ((Class<?>)args[0]).isInstance(entry.connection)
+                        || entry.connection.isWrapperFor((Class<?>)args[0]);
+            default:
+                break;
+        }
+        try {
+            return method.invoke(entry.connection, args);
+        }
+        catch(InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if(cause instanceof SQLException && isConnectionFailure((SQLException)cause)) {
+                entry.broken = true;
+            }
+            throw cause;
+        }
+    }
+
+    private void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        pool.release(entry, autoCommitChanged, readOnlyChanged, transactionIsolationChanged);
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+}
@@ -0,0 +1,363 @@
+package no.obje.jdbcmiddleware.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A small connection pool wrapping any data source. Idle connections are kept on a lock-free stack, so the most
+ * recently used connection is handed out first, and the number of connections in use is bounded by a fair semaphore.
+ * <p>
+ * The min size number of connections are opened when the pool is created. Connections are validated when borrowed,
+ * unless they were used within the validation skip window, and are closed once they reach their max lifetime. Auto
+ * commit, read only and transaction isolation are reset to their initial values when a connection is returned.
+ * Housekeeping runs on a shared daemon thread at the configured interval, retiring idle connections past their max
+ * lifetime and opening connections until the pool is back at its min size.
+ * Retire listeners are told about every physical connection just before it is closed, which is how a
+ * {@link no.obje.jdbcmiddleware.service.StatementCache} learns to discard the statements cached for it.
+ */
+public class PooledDataSource implements DataSource, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledDataSource.class);
+
+    private static final ScheduledThreadPoolExecutor HOUSEKEEPER = newHousekeeper();
+
+    private final DataSource dataSource;
+    private final PoolConfig config;
+    private final Deque<PoolEntry> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final List<Consumer<Connection>> retireListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledFuture<?> housekeeping;
+    private volatile boolean closed;
+
+    public PooledDataSource(DataSource dataSource) {
+        this(dataSource, PoolConfig.defaults());
+    }
+
+    public PooledDataSource(DataSource dataSource, PoolConfig config) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.config = Objects.requireNonNull(config);
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        prewarm();
+        final long intervalNanos = config.getHousekeepingInterval().toNanos();
+        this.housekeeping = HOUSEKEEPER.scheduleWithFixedDelay(
+                this::housekeep,
+                intervalNanos,
+                intervalNanos,
+                TimeUnit.NANOSECONDS
+        );
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if(closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        final long startNanos = System.nanoTime();
+        try {
+            if(!permits.tryAcquire(config.getConnectionTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + config.getConnectionTimeout().toMillis() + " ms waiting for a connection"
+                );
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            final PoolEntry entry = borrowEntry();
+            recordWait(System.nanoTime() - startNanos);
+            return (Connection)Proxy.newProxyInstance(
+                    PooledDataSource.class.getClassLoader(),
+                    new Class<?>[] {Connection.class},
+                    new PooledConnectionHandler(this, entry)
+            );
+        }
+        catch(SQLException | RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections are always opened with the same credentials");
+    }
+
+    /**
+     * @param listener called with the physical connection whenever a connection is retired, because it expired, failed
+     *                 or the pool was closed, just before the connection is closed
+     */
+    public void addRetireListener(Consumer<Connection> listener) {
+        retireListeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Stops housekeeping and closes every idle connection. Connections in use are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if(housekeeping != null) {
+            housekeeping.cancel(false);
+        }
+        PoolEntry entry;
+        while((entry = idle.pollFirst()) != null) {
+            retire(entry);
+        }
+    }
+
+    /**
+     * @return the number of open connections, idle or in use
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /**
+     * @return the number of times a connection could not be handed out within the connection timeout
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * @return the total time spent waiting for connections by all borrowers, in nanoseconds
+     */
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    void release(PoolEntry entry, boolean autoCommitChanged, boolean readOnlyChanged, boolean isolationChanged) {
+        try {
+            if(closed || entry.broken || isExpired(entry) || size.get() > config.getMaxSize()) {
+                retire(entry);
+                return;
+            }
+            try {
+                reset(entry, autoCommitChanged, readOnlyChanged, isolationChanged);
+            }
+            catch(SQLException e) {
+                LOGGER.debug("Unable to reset returned connection, closing it", e);
+                retire(entry);
+                return;
+            }
+            entry.lastUsedNanos = System.nanoTime();
+            idle.offerFirst(entry);
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    private PoolEntry borrowEntry() throws SQLException {
+        PoolEntry entry;
+        while((entry = idle.pollFirst()) != null) {
+            if(isUsable(entry)) {
+                borrowCount.increment();
+                return entry;
+            }
+            retire(entry);
+        }
+        entry = open();
+        borrowCount.increment();
+        return entry;
+    }
+
+    private boolean isUsable(PoolEntry entry) {
+        if(isExpired(entry)) {
+            return false;
+        }
+        if(System.nanoTime() - entry.lastUsedNanos < config.getValidationSkipWindow().toNanos()) {
+            return true;
+        }
+        try {
+            return entry.connection.isValid((int)Math.max(1L, config.getValidationTimeout().getSeconds()));
+        }
+        catch(SQLException e) {
+            LOGGER.debug("Connection validation failed", e);
+            return false;
+        }
+    }
+
+    private boolean isExpired(PoolEntry entry) {
+        return System.nanoTime() - entry.createdNanos >= config.getMaxLifetime().toNanos();
+    }
+
+    private void reset(PoolEntry entry, boolean autoCommitChanged, boolean readOnlyChanged, boolean isolationChanged)
+            throws SQLException {
+        final Connection connection = entry.connection;
+        if(autoCommitChanged && connection.getAutoCommit() != entry.initialAutoCommit) {
+            if(!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(entry.initialAutoCommit);
+        }
+        if(readOnlyChanged && connection.isReadOnly() != entry.initialReadOnly) {
+            connection.setReadOnly(entry.initialReadOnly);
+        }
+        if(isolationChanged && connection.getTransactionIsolation() != entry.initialTransactionIsolation) {
+            connection.setTransactionIsolation(entry.initialTransactionIsolation);
+        }
+    }
+
+    /**
+     * Retires idle connections past their max lifetime, since they would otherwise stay open until borrowed, and
+     * opens connections until the pool is back at its min size. Never throws, as that would cancel the housekeeping.
+     */
+    private void housekeep() {
+        try {
+            for(PoolEntry entry : idle) {
+                if(isExpired(entry) && idle.removeFirstOccurrence(entry)) {
+                    retire(entry);
+                }
+            }
+            while(!closed && size.get() < config.getMinSize()) {
+                final PoolEntry entry = open();
+                idle.offerLast(entry);
+                if(closed && idle.removeFirstOccurrence(entry)) {
+                    retire(entry);
+                }
+            }
+        }
+        catch(SQLException | RuntimeException e) {
+            LOGGER.warn("Unable to open connections up to the min size of the pool", e);
+        }
+    }
+
+    private void prewarm() {
+        for(int i = 0; i < config.getMinSize(); i++) {
+            try {
+                idle.offerFirst(open());
+            }
+            catch(SQLException e) {
+                close();
+                throw new RuntimeException("Unable to open initial connections", e);
+            }
+        }
+    }
+
+    private PoolEntry open() throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        size.incrementAndGet();
+        try {
+            return new PoolEntry(connection, System.nanoTime());
+        }
+        catch(SQLException | RuntimeException e) {
+            size.decrementAndGet();
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void retire(PoolEntry entry) {
+        size.decrementAndGet();
+        for(Consumer<Connection> listener : retireListeners) {
+            try {
+                listener.accept(entry.connection);
+            }
+            catch(RuntimeException e) {
+                LOGGER.warn("Retire listener failed", e);
+            }
+        }
+        try {
+            entry.connection.close();
+        }
+        catch(SQLException e) {
+            LOGGER.debug("Unable to close retired connection", e);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newHousekeeper() {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ScheduledThreadPoolExecutor housekeeper = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "jdbc-middleware-housekeeper-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.setRemoveOnCancelPolicy(true);
+        return housekeeper;
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        long currentMax = maxWaitNanos.get();
+        while(waitNanos > currentMax && !maxWaitNanos.compareAndSet(currentMax, waitNanos)) {
+            currentMax = maxWaitNanos.get();
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,211 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.domain.ArgumentBinder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binds statement arguments by their class. Binders are looked up by the exact class of the argument, and arguments of
+ * classes without a binder of their own use the binder of their closest registered superclass or interface, which is
+ * resolved once per class. Instances are immutable, {@link #with(Class, ArgumentBinder)} returns a copy.
+ * <p>
+ * The defaults bind null, the boxed primitives, {@link String}, {@link BigDecimal}, {@link LocalDate},
+ * {@link LocalDateTime}, {@link Instant}, the {@code java.sql} date and time types, {@link UUID}, {@code byte[]},
+ * enums, the latter by their name, and the streams {@link InputStream}, {@link Reader} and {@link Path}. Streams are
+ * read by the driver when the statement is executed, without being held in memory first. Input streams and readers
+ * are left to the caller to close, while files are closed as soon as the driver has read them, or once the statement
+ * has run when the driver stops reading early. Registered binders opening streams of their own should override
+ * {@link ArgumentBinder#bind(PreparedStatement, int, Object, List)}, so that their streams are closed the same way.
+ */
+public final class ArgumentBinders {
+
+    private static final ArgumentBinders DEFAULTS = new ArgumentBinders(defaultBinders());
+
+    private final Map<Class<?>, ArgumentBinder<?>> registeredBinders;
+    private final Map<Class<?>, ArgumentBinder<?>> resolvedBinders;
+    private final Map<Class<?>, Boolean> expandedTypes = new ConcurrentHashMap<>();
+
+    private ArgumentBinders(Map<Class<?>, ArgumentBinder<?>> registeredBinders) {
+        this.registeredBinders = Collections.unmodifiableMap(registeredBinders);
+        this.resolvedBinders = new ConcurrentHashMap<>(registeredBinders);
+    }
+
+    public static ArgumentBinders defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param type the class of arguments to bind, replacing any binder already registered for it
+     * @param binder binds arguments of the given class, and of subclasses without a closer binder
+     */
+    public <T> ArgumentBinders with(Class<T> type, ArgumentBinder<? super T> binder) {
+        final Map<Class<?>, ArgumentBinder<?>> binders = new HashMap<>(registeredBinders);
+        binders.put(Objects.requireNonNull(type), Objects.requireNonNull(binder));
+        return new ArgumentBinders(binders);
+    }
+
+    /**
+     * Null is bound with {@code setObject}, leaving the driver to infer the type of the parameter, since several
+     * drivers reject {@code setNull} with {@link java.sql.Types#NULL}.
+     */
+    void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        bind(statement, index, value, null);
+    }
+
+    /**
+     * @param openedStreams collects the streams opened by binders, see
+     *                      {@link ArgumentBinder#bind(PreparedStatement, int, Object, List)}, which the caller closes
+     *                      once the statement has run, or null to leave them to be closed when the driver has read them
+     */
+    @SuppressWarnings("unchecked")
+    void bind(PreparedStatement statement, int index, Object value, List<Closeable> openedStreams)
+            throws SQLException {
+        if(value == null) {
+            statement.setObject(index, null);
+            return;
+        }
+        ArgumentBinder<Object> binder = (ArgumentBinder<Object>)resolvedBinders.get(value.getClass());
+        if(binder == null) {
+            binder = (ArgumentBinder<Object>)resolvedBinders.computeIfAbsent(value.getClass(), this::resolveBinder);
+        }
+        binder.bind(statement, index, value, openedStreams);
+    }
+
+    /**
+     * A collection is expanded into a list of parameters unless the binder it resolves to is registered for a
+     * collection type, such as a binder for {@link List} binding lists as SQL arrays.
+     *
+     * @return whether the given argument is a collection to expand into a list of parameters
+     */
+    boolean isExpanded(Object value) {
+        if(!(value instanceof Collection)) {
+            return false;
+        }
+        return expandedTypes.computeIfAbsent(value.getClass(), type -> {
+            final Class<?> registeredType = findRegisteredType(type);
+            return registeredType == null || !Collection.class.isAssignableFrom(registeredType);
+        });
+    }
+
+    private ArgumentBinder<?> resolveBinder(Class<?> type) {
+        final Class<?> registeredType = findRegisteredType(type);
+        if(registeredType == null) {
+            throw new IllegalArgumentException("Unsupported argument type: " + type);
+        }
+        return registeredBinders.get(registeredType);
+    }
+
+    /**
+     * Walks the superclasses of the given class before its interfaces, breadth first, so that the closest registered
+     * type wins.
+     *
+     * @return the closest type with a registered binder, or null if there is none
+     */
+    private Class<?> findRegisteredType(Class<?> type) {
+        final Deque<Class<?>> candidates = new ArrayDeque<>();
+        final Set<Class<?>> visited = new HashSet<>();
+        for(Class<?> superclass = type; superclass != null; superclass = superclass.getSuperclass()) {
+            if(registeredBinders.containsKey(superclass)) {
+                return superclass;
+            }
+            Collections.addAll(candidates, superclass.getInterfaces());
+        }
+        while(!candidates.isEmpty()) {
+            final Class<?> candidate = candidates.poll();
+            if(!visited.add(candidate)) {
+                continue;
+            }
+            if(registeredBinders.containsKey(candidate)) {
+                return candidate;
+            }
+            Collections.addAll(candidates, candidate.getInterfaces());
+        }
+        return null;
+    }
+
+    private static Map<Class<?>, ArgumentBinder<?>> defaultBinders() {
+        final Map<Class<?>, ArgumentBinder<?>> binders = new HashMap<>();
+        binders.put(String.class, (ArgumentBinder<String>)PreparedStatement::setString);
+        binders.put(Integer.class, (ArgumentBinder<Integer>)PreparedStatement::setInt);
+        binders.put(Long.class, (ArgumentBinder<Long>)PreparedStatement::setLong);
+        binders.put(Short.class, (ArgumentBinder<Short>)PreparedStatement::setShort);
+        binders.put(Byte.class, (ArgumentBinder<Byte>)PreparedStatement::setByte);
+        binders.put(Double.class, (ArgumentBinder<Double>)PreparedStatement::setDouble);
+        binders.put(Float.class, (ArgumentBinder<Float>)PreparedStatement::setFloat);
+        binders.put(Boolean.class, (ArgumentBinder<Boolean>)PreparedStatement::setBoolean);
+        binders.put(BigDecimal.class, (ArgumentBinder<BigDecimal>)PreparedStatement::setBigDecimal);
+        binders.put(byte[].class, (ArgumentBinder<byte[]>)PreparedStatement::setBytes);
+        binders.put(LocalDate.class, (ArgumentBinder<LocalDate>)(statement, index, value) ->
+                statement.setDate(index, Date.valueOf(value))
+        );
+        binders.put(LocalDateTime.class, (ArgumentBinder<LocalDateTime>)(statement, index, value) ->
+                statement.setTimestamp(index, Timestamp.valueOf(value))
+        );
+        binders.put(Instant.class, (ArgumentBinder<Instant>)(statement, index, value) ->
+                statement.setTimestamp(index, Timestamp.from(value))
+        );
+        binders.put(Date.class, (ArgumentBinder<Date>)PreparedStatement::setDate);
+        binders.put(Time.class, (ArgumentBinder<Time>)PreparedStatement::setTime);
+        binders.put(Timestamp.class, (ArgumentBinder<Timestamp>)PreparedStatement::setTimestamp);
+        binders.put(UUID.class, (ArgumentBinder<UUID>)PreparedStatement::setObject);
+        binders.put(Enum.class, (ArgumentBinder<Enum<?>>)(statement, index, value) ->
+                statement.setString(index, value.name())
+        );
+        binders.put(InputStream.class, (ArgumentBinder<InputStream>)PreparedStatement::setBinaryStream);
+        binders.put(Reader.class, (ArgumentBinder<Reader>)PreparedStatement::setCharacterStream);
+        binders.put(Path.class, new PathBinder());
+        return binders;
+    }
+
+    private static final class PathBinder implements ArgumentBinder<Path> {
+
+        @Override
+        public void bind(PreparedStatement statement, int index, Path value) throws SQLException {
+            bind(statement, index, value, null);
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index, Path value, List<Closeable> openedStreams)
+                throws SQLException {
+            final long size;
+            try {
+                size = Files.size(value);
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            final PathInputStream in = new PathInputStream(value, size);
+            if(openedStreams != null) {
+                openedStreams.add(in);
+            }
+            statement.setBinaryStream(index, in, size);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.domain.RowCallback;
+import no.obje.jdbcmiddleware.domain.RowMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the operations of a {@link JdbcService} on the given executor, returning futures instead of blocking the
+ * caller. JDBC itself still blocks, so the executor should either be bounded by the size of the connection pool, see
+ * {@link #newBoundedExecutor(int)}, or use virtual threads on JDKs which support them.
+ * <p>
+ * Transactions are bound to the thread which started them. An operation submitted from a thread with a transaction in
+ * progress is therefore run directly on that thread, joining the transaction, and the returned future is already
+ * completed. Use {@link #doInTransactionAsync(Callable)} to run a whole transaction on the executor, with the options
+ * of the given {@link TransactionManager}, or {@link #doInTransactionAsync(TransactionOptions, Callable)} to give
+ * options of its own.
+ */
+public class AsyncJdbcService {
+
+    private final JdbcService jdbcService;
+    private final ConnectionManager connectionManager;
+    private final TransactionManager transactionManager;
+    private final Executor executor;
+
+    public AsyncJdbcService(JdbcService jdbcService, Executor executor) {
+        this(jdbcService, new TransactionManager(jdbcService.getConnectionManager()), executor);
+    }
+
+    /**
+     * @param jdbcService the service running the operations
+     * @param transactionManager runs the transactions started by {@link #doInTransactionAsync(Callable)}, which should
+     *                           share the connection manager of the service
+     * @param executor the executor running the operations
+     */
+    public AsyncJdbcService(JdbcService jdbcService, TransactionManager transactionManager, Executor executor) {
+        this.jdbcService = Objects.requireNonNull(jdbcService);
+        this.connectionManager = jdbcService.getConnectionManager();
+        this.transactionManager = Objects.requireNonNull(transactionManager);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Creates an executor running at most the given number of operations at a time, typically the max size of the
+     * connection pool, on daemon threads. Operations beyond that are queued.
+     *
+     * @param threads the number of threads
+     */
+    public static ExecutorService newBoundedExecutor(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Thread count must be a positive number");
+        }
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "jdbc-middleware-async-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public <T> CompletableFuture<Optional<T>> queryForSingle(String sql, RowMapper<T> rowMapper, Object... args) {
+        return submit(() -> jdbcService.queryForSingle(sql, rowMapper, args));
+    }
+
+    public <T> CompletableFuture<List<T>> queryForList(String sql, RowMapper<T> rowMapper, Object... args) {
+        return submit(() -> jdbcService.queryForList(sql, rowMapper, args));
+    }
+
+    /**
+     * Splits the key range from fromKey, inclusive, to toKey, exclusive, into at most the given number of equally sized
+     * partitions, and runs the given query once per partition concurrently, each on its own executor thread and
+     * connection. The first two parameters of the query are the bounds of the partition, such as in
+     * {@code SELECT * FROM orders WHERE id >= ? AND id < ? AND status = ?}, followed by the given arguments.
+     * <p>
+     * When ordered, the result holds the rows of each partition in key range order, so that a query ordered by its
+     * key gives a result ordered by key. Otherwise the rows of each partition are added as soon as the partition
+     * completes. Called inside a transaction, the partitions are run one after the other on the calling thread.
+     *
+     * @param sql the query to run for every partition
+     * @param rowMapper maps every row, on the executor thread
+     * @param fromKey the lowest key of the range
+     * @param toKey the key following the highest key of the range
+     * @param parallelism the number of partitions
+     * @param ordered whether the rows of the partitions should be merged in key range order
+     * @param args the arguments following the partition bounds
+     */
+    public <T> CompletableFuture<List<T>> queryForListPartitioned(
+            String sql,
+            RowMapper<T> rowMapper,
+            long fromKey,
+            long toKey,
+            int parallelism,
+            boolean ordered,
+            Object... args
+    ) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be a positive number");
+        }
+        if(toKey < fromKey) {
+            throw new IllegalArgumentException("To key cannot be lower than from key");
+        }
+        final long[] bounds = partition(fromKey, toKey, parallelism);
+        final List<CompletableFuture<List<T>>> partitions = new ArrayList<>(bounds.length - 1);
+        final List<T> unorderedResult = Collections.synchronizedList(new ArrayList<>());
+        for(int i = 0; i < bounds.length - 1; i++) {
+            final Object[] partitionArgs = new Object[args.length + 2];
+            partitionArgs[0] = bounds[i];
+            partitionArgs[1] = bounds[i + 1];
+            System.arraycopy(args, 0, partitionArgs, 2, args.length);
+            final CompletableFuture<List<T>> partition = queryForList(sql, rowMapper, partitionArgs);
+            partitions.add(ordered ? partition : partition.thenApply(rows -> {
+                unorderedResult.addAll(rows);
+                return rows;
+            }));
+        }
+        return CompletableFuture.allOf(partitions.toArray(new CompletableFuture<?>[0])).thenApply(completed -> {
+            if(!ordered) {
+                return new ArrayList<>(unorderedResult);
+            }
+            final List<T> result = new ArrayList<>();
+            for(CompletableFuture<List<T>> partition : partitions) {
+                result.addAll(partition.join());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Note that the callback is invoked on the executor thread.
+     */
+    public CompletableFuture<Void> forEachRow(String sql, int fetchSize, RowCallback rowCallback, Object... args) {
+        return submit(() -> {
+            jdbcService.forEachRow(sql, fetchSize, rowCallback, args);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Long> insertAndReturnKey(String sql, String keyColumn, Object... args) {
+        return submit(() -> jdbcService.insertAndReturnKey(sql, keyColumn, args));
+    }
+
+    public CompletableFuture<Void> insert(String sql, Object... args) {
+        return submit(() -> {
+            jdbcService.insert(sql, args);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> updateSingle(String sql, Object... args) {
+        return submit(() -> {
+            jdbcService.updateSingle(sql, args);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Integer> update(String sql, Object... args) {
+        return submit(() -> jdbcService.update(sql, args));
+    }
+
+    public CompletableFuture<Void> deleteSingle(String sql, Object... args) {
+        return updateSingle(sql, args);
+    }
+
+    public CompletableFuture<Integer> delete(String sql, Object... args) {
+        return update(sql, args);
+    }
+
+    public CompletableFuture<int[]> batchUpdate(String sql, Iterable<Object[]> rows, int chunkSize) {
+        return submit(() -> jdbcService.batchUpdate(sql, rows, chunkSize));
+    }
+
+    public CompletableFuture<int[]> batchInsert(String sql, Iterable<Object[]> rows, int chunkSize) {
+        return batchUpdate(sql, rows, chunkSize);
+    }
+
+    public CompletableFuture<int[]> batchDelete(String sql, Iterable<Object[]> rows, int chunkSize) {
+        return batchUpdate(sql, rows, chunkSize);
+    }
+
+    /**
+     * Runs the given callable in a transaction on a single executor thread. Every {@link JdbcService} call made by the
+     * callable joins the transaction, which is committed or rolled back before the future completes, so that the
+     * executor thread is never left with a transaction bound to it.
+     */
+    public <T> CompletableFuture<T> doInTransactionAsync(Callable<T> callable) {
+        return submit(() -> transactionManager.doInTransaction(callable));
+    }
+
+    public CompletableFuture<Void> doInTransactionAsync(Runnable runnable) {
+        return submit(() -> {
+            transactionManager.doInTransaction(runnable);
+            return null;
+        });
+    }
+
+    /**
+     * Same as {@link #doInTransactionAsync(Callable)}, with the given options instead of the default options of the
+     * transaction manager.
+     */
+    public <T> CompletableFuture<T> doInTransactionAsync(TransactionOptions options, Callable<T> callable) {
+        Objects.requireNonNull(options);
+        return submit(() -> transactionManager.doInTransaction(options, callable));
+    }
+
+    public CompletableFuture<Void> doInTransactionAsync(TransactionOptions options, Runnable runnable) {
+        Objects.requireNonNull(options);
+        return submit(() -> {
+            transactionManager.doInTransaction(options, runnable);
+            return null;
+        });
+    }
+
+    /**
+     * @return the bounds of every partition, each partition ending where the next one starts
+     */
+    static long[] partition(long fromKey, long toKey, int parallelism) {
+        final long size = Math.subtractExact(toKey, fromKey);
+        final int partitions = (int)Math.max(1L, Math.min(parallelism, size));
+        final long[] bounds = new long[partitions + 1];
+        bounds[0] = fromKey;
+        for(int i = 0; i < partitions; i++) {
+            bounds[i + 1] = bounds[i] + size / partitions + (i < size % partitions ? 1 : 0);
+        }
+        return bounds;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        if(!connectionManager.isTransactionInProgress()) {
+            return CompletableFuture.supplyAsync(operation, executor);
+        }
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(operation.get());
+        }
+        catch(RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
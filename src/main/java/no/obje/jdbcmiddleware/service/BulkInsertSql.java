@@ -0,0 +1,170 @@
+package no.obje.jdbcmiddleware.service;
+
+/**
+ * A single row insert statement, rewritten to insert a fixed number of rows per execution. Only a few row counts are
+ * used, so that the generated statements can be cached, by this class and by the database.
+ */
+final class BulkInsertSql {
+
+    /**
+     * The number of rows inserted per execution, largest first.
+     */
+    static final int[] BUCKET_SIZES = {256, 64, 16};
+
+    private final String prefix;
+    private final String row;
+    private final int rowWidth;
+    private final String[] bucketSql = new String[BUCKET_SIZES.length];
+
+    private BulkInsertSql(String prefix, String row, int rowWidth) {
+        this.prefix = prefix;
+        this.row = row;
+        this.rowWidth = rowWidth;
+    }
+
+    /**
+     * Parses an insert statement with a single row of values, such as
+     * {@code INSERT INTO customer (id, name) VALUES (?, ?)}. The row is the first parenthesized group following a
+     * VALUES keyword outside of parentheses, literals and comments, and nothing but a semicolon may follow it, since
+     * trailing clauses such as {@code ON DUPLICATE KEY UPDATE} can not be repeated per row.
+     */
+    static BulkInsertSql parse(String sql) {
+        final int start = skipIgnored(sql, 0);
+        if(!sql.regionMatches(true, start, "INSERT", 0, "INSERT".length())
+                || !isWordEnd(sql, start + "INSERT".length())) {
+            throw invalid(sql);
+        }
+        final int values = findValues(sql, start);
+        if(values < 0) {
+            throw invalid(sql);
+        }
+        final int rowStart = skipIgnored(sql, values + "VALUES".length());
+        if(rowStart >= sql.length() || sql.charAt(rowStart) != '(') {
+            throw invalid(sql);
+        }
+        final int rowEnd = findClosingParenthesis(sql, rowStart);
+        if(rowEnd < 0) {
+            throw invalid(sql);
+        }
+        int end = skipIgnored(sql, rowEnd);
+        if(end < sql.length() && sql.charAt(end) == ';') {
+            end = skipIgnored(sql, end + 1);
+        }
+        if(end < sql.length()) {
+            throw invalid(sql);
+        }
+        final String row = sql.substring(rowStart, rowEnd);
+        return new BulkInsertSql(
+                sql.substring(0, rowStart),
+                row,
+                SqlTemplate.parsePositional(row).getParameterNames().size()
+        );
+    }
+
+    int getRowWidth() {
+        return rowWidth;
+    }
+
+    /**
+     * @param bucket index into {@link #BUCKET_SIZES}
+     */
+    String getSql(int bucket) {
+        String sql = bucketSql[bucket];
+        if(sql == null) {
+            final int rows = BUCKET_SIZES[bucket];
+            final StringBuilder builder = new StringBuilder(prefix.length() + rows * (row.length() + 1)).append(prefix);
+            for(int i = 0; i < rows; i++) {
+                if(i > 0) {
+                    builder.append(',');
+                }
+                builder.append(row);
+            }
+            sql = builder.toString();
+            bucketSql[bucket] = sql;
+        }
+        return sql;
+    }
+
+    /**
+     * @return the index of the first VALUES keyword outside of parentheses, literals and comments, or -1
+     */
+    private static int findValues(String sql, int start) {
+        int depth = 0;
+        int i = start;
+        while(i < sql.length()) {
+            final int skipped = SqlTemplate.skipLiteralOrComment(sql, i);
+            if(skipped > i) {
+                i = skipped;
+                continue;
+            }
+            final char c = sql.charAt(i);
+            if(c == '(') {
+                depth++;
+            }
+            else if(c == ')') {
+                depth--;
+            }
+            else if(depth == 0
+                    && sql.regionMatches(true, i, "VALUES", 0, "VALUES".length())
+                    && (i == 0 || !Character.isJavaIdentifierPart(sql.charAt(i - 1)))
+                    && isWordEnd(sql, i + "VALUES".length())) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index following the parenthesis closing the one at the given index, or -1 if it is never closed
+     */
+    private static int findClosingParenthesis(String sql, int open) {
+        int depth = 0;
+        int i = open;
+        while(i < sql.length()) {
+            final int skipped = SqlTemplate.skipLiteralOrComment(sql, i);
+            if(skipped > i) {
+                i = skipped;
+                continue;
+            }
+            final char c = sql.charAt(i);
+            if(c == '(') {
+                depth++;
+            }
+            else if(c == ')' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the first character from the given index which is neither whitespace nor part of a comment
+     */
+    private static int skipIgnored(String sql, int start) {
+        int i = start;
+        while(i < sql.length()) {
+            if(Character.isWhitespace(sql.charAt(i))) {
+                i++;
+            }
+            else if(sql.startsWith("--", i) || sql.startsWith("/*", i)) {
+                i = SqlTemplate.skipLiteralOrComment(sql, i);
+            }
+            else {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isWordEnd(String sql, int index) {
+        return index >= sql.length() || !Character.isJavaIdentifierPart(sql.charAt(index));
+    }
+
+    private static IllegalArgumentException invalid(String sql) {
+        return new IllegalArgumentException(
+                "Bulk insert requires an insert statement ending with a single VALUES row: '" + sql + "'"
+        );
+    }
+}
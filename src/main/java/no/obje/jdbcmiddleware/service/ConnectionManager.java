@@ -1,31 +1,76 @@
 package no.obje.jdbcmiddleware.service;
 
 import no.obje.jdbcmiddleware.domain.ConnectionCallback;
+import no.obje.jdbcmiddleware.exception.TransactionTimeoutException;
+import no.obje.jdbcmiddleware.metrics.QueryListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.Optional;
 
 public class ConnectionManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionManager.class);
 
     private final DataSource dataSource;
-    private ThreadLocal<Connection> transactionConnection = new ThreadLocal<>();
+    private final QueryListener queryListener;
+    private ThreadLocal<Transaction> transaction = new ThreadLocal<>();
 
     public ConnectionManager(DataSource dataSource) {
+        this(dataSource, QueryListener.NONE);
+    }
+
+    /**
+     * @param dataSource the data source connections are obtained from
+     * @param queryListener notified of connection acquisition here, and of every statement run by a
+     *                      {@link JdbcService} using this connection manager
+     */
+    public ConnectionManager(DataSource dataSource, QueryListener queryListener) {
         this.dataSource = Objects.requireNonNull(dataSource);
+        this.queryListener = Objects.requireNonNull(queryListener);
     }
 
     public <R> R doWithConnection(ConnectionCallback<R> callback) {
-        if(transactionConnection.get() != null) {
-            return callback.run(transactionConnection.get());
+        return doWithConnection(callback, false);
+    }
+
+    /**
+     * Same as {@link #doWithConnection(ConnectionCallback)}, for a callback which only reads. Outside of a transaction
+     * the connection may then be opened against a read replica.
+     */
+    <R> R doWithReadConnection(ConnectionCallback<R> callback) {
+        return doWithConnection(callback, true);
+    }
+
+    /**
+     * Hands out a connection which outlives a single callback. The transaction connection is returned if a transaction
+     * is in progress. Every acquired connection must be given back through {@link #releaseConnection(Connection)}.
+     */
+    Connection acquireConnection() {
+        return acquireConnection(false);
+    }
+
+    /**
+     * Same as {@link #acquireConnection()}, for a connection which is only read from.
+     */
+    Connection acquireReadConnection() {
+        return acquireConnection(true);
+    }
+
+    void releaseConnection(Connection connection) {
+        final Transaction currentTransaction = transaction.get();
+        if(currentTransaction != null && connection == currentTransaction.connection) {
+            return;
         }
-        try(Connection connection = dataSource.getConnection()) {
-            return callback.run(connection);
+        try {
+            connection.close();
         }
         catch(SQLException e) {
             throw new RuntimeException(e);
@@ -33,46 +78,44 @@ public class ConnectionManager {
     }
 
     public void startTransaction() {
+        startTransaction(TransactionOptions.defaults());
+    }
+
+    /**
+     * Starts a transaction bound to the current thread. With a lazy connection, no connection is acquired until the
+     * first statement of the transaction needs one. The read-only mode and isolation level of the options are applied
+     * to the connection when it is acquired, and reset before it is closed.
+     */
+    public void startTransaction(TransactionOptions options) {
         LOGGER.debug("Starting new transaction");
-        if(transactionConnection.get() != null) {
+        if(transaction.get() != null) {
             throw new IllegalStateException("Unable to start transaction, transaction already in progress");
         }
-        Connection connection;
-        try {
-            connection = dataSource.getConnection();
-        }
-        catch(SQLException e) {
-            throw new RuntimeException(e);
-        }
-        try {
-            connection.setAutoCommit(false);
-            transactionConnection.set(connection);
-        }
-        catch(SQLException e) {
-            try {
-                connection.close();
-            }
-            catch(SQLException e1) {
-                throw new RuntimeException("Unable to close connection", e);
-            }
-            throw new RuntimeException(e);
+        final Transaction newTransaction = new Transaction(Objects.requireNonNull(options));
+        if(!options.isLazyConnection()) {
+            newTransaction.getConnection();
         }
-
+        transaction.set(newTransaction);
     }
 
     public void commitTransaction() {
         LOGGER.debug("Committing transaction");
-        Connection connection = transactionConnection.get();
-        if(connection == null) {
+        final Transaction currentTransaction = transaction.get();
+        if(currentTransaction == null) {
             throw new IllegalStateException("Unable to commit transaction with missing connection");
         }
+        final Connection connection = currentTransaction.connection;
+        if(connection == null) {
+            transaction.remove();
+            return;
+        }
         try {
             connection.commit();
-            connection.close();
+            currentTransaction.close();
         }
         catch(SQLException e) {
             try {
-                connection.close();
+                currentTransaction.close();
             }
             catch(SQLException e1) {
                 throw new RuntimeException("Unable to close connection", e1);
@@ -80,23 +123,28 @@ public class ConnectionManager {
             throw new RuntimeException("Unable to commit transaction", e);
         }
         finally {
-            transactionConnection.remove();
+            transaction.remove();
         }
     }
 
     public void rollbackTransaction() {
         LOGGER.debug("Rolling back transaction");
-        Connection connection = transactionConnection.get();
-        if(connection == null) {
+        final Transaction currentTransaction = transaction.get();
+        if(currentTransaction == null) {
             throw new IllegalStateException("Unable to rollback transaction with missing connection");
         }
+        final Connection connection = currentTransaction.connection;
+        if(connection == null) {
+            transaction.remove();
+            return;
+        }
         try {
             connection.rollback();
-            connection.close();
+            currentTransaction.close();
         }
         catch(SQLException e) {
             try {
-                connection.close();
+                currentTransaction.close();
             }
             catch(SQLException e1) {
                 throw new RuntimeException("Unable to close connection", e1);
@@ -104,12 +152,209 @@ public class ConnectionManager {
             throw new RuntimeException("Failed to rollback transaction", e);
         }
         finally {
-            transactionConnection.remove();
+            transaction.remove();
+        }
+    }
+
+    /**
+     * Sets a savepoint in the transaction in progress.
+     */
+    public Savepoint setSavepoint() {
+        LOGGER.debug("Setting savepoint");
+        try {
+            return requireTransactionConnection("set savepoint").setSavepoint();
+        }
+        catch(SQLException e) {
+            throw new RuntimeException("Unable to set savepoint", e);
+        }
+    }
+
+    /**
+     * Rolls back the work done in the transaction in progress since the given savepoint was set.
+     */
+    public void rollbackToSavepoint(Savepoint savepoint) {
+        LOGGER.debug("Rolling back to savepoint");
+        try {
+            requireTransactionConnection("rollback to savepoint").rollback(savepoint);
+        }
+        catch(SQLException e) {
+            throw new RuntimeException("Failed to rollback to savepoint", e);
+        }
+    }
+
+    public void releaseSavepoint(Savepoint savepoint) {
+        try {
+            requireTransactionConnection("release savepoint").releaseSavepoint(savepoint);
+        }
+        catch(SQLFeatureNotSupportedException e) {
+            LOGGER.debug("Releasing savepoints is not supported by the driver", e);
+        }
+        catch(SQLException e) {
+            throw new RuntimeException("Unable to release savepoint", e);
         }
     }
 
     public boolean isTransactionInProgress() {
-        return transactionConnection.get() != null;
+        return transaction.get() != null;
+    }
+
+    /**
+     * @return the nanoseconds left before the transaction in progress times out, or {@link Long#MAX_VALUE} if there is
+     *         no transaction in progress or it has no timeout
+     * @throws TransactionTimeoutException if the timeout of the transaction in progress has passed
+     */
+    long getRemainingTransactionNanos() {
+        final Transaction currentTransaction = transaction.get();
+        final Optional<Duration> timeout = currentTransaction == null
+                ? Optional.empty()
+                : currentTransaction.options.getTimeout();
+        if(!timeout.isPresent()) {
+            return Long.MAX_VALUE;
+        }
+        final long remainingNanos = currentTransaction.deadlineNanos - System.nanoTime();
+        if(remainingNanos <= 0) {
+            throw new TransactionTimeoutException("Transaction timed out after " + timeout.get());
+        }
+        return remainingNanos;
+    }
+
+    QueryListener getQueryListener() {
+        return queryListener;
+    }
+
+    private Connection requireTransactionConnection(String action) {
+        final Transaction currentTransaction = transaction.get();
+        if(currentTransaction == null) {
+            throw new IllegalStateException("Unable to " + action + " without a transaction in progress");
+        }
+        return currentTransaction.getConnection();
+    }
+
+    /**
+     * Opens a new connection, either for a transaction or for a single statement outside of one.
+     *
+     * @param readOnly whether only reads will be run on the connection
+     */
+    Connection openConnection(boolean readOnly) throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    private <R> R doWithConnection(ConnectionCallback<R> callback, boolean readOnly) {
+        final Transaction currentTransaction = transaction.get();
+        if(currentTransaction != null) {
+            return callback.run(currentTransaction.getConnection());
+        }
+        try(Connection connection = getConnection(readOnly)) {
+            return callback.run(connection);
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Connection acquireConnection(boolean readOnly) {
+        final Transaction currentTransaction = transaction.get();
+        if(currentTransaction != null) {
+            return currentTransaction.getConnection();
+        }
+        try {
+            return getConnection(readOnly);
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Connection getConnection(boolean readOnly) throws SQLException {
+        final long startNanos = System.nanoTime();
+        final Connection connection = openConnection(readOnly);
+        try {
+            queryListener.connectionAcquired(System.nanoTime() - startNanos);
+        }
+        catch(RuntimeException e) {
+            LOGGER.warn("Query listener failed", e);
+        }
+        return connection;
+    }
+
+    /**
+     * The transaction bound to a thread, and its connection once acquired.
+     */
+    private final class Transaction {
+
+        private final TransactionOptions options;
+        private final long deadlineNanos;
+        private Connection connection;
+        private boolean readOnlyApplied;
+        private int previousIsolation = -1;
+
+        private Transaction(TransactionOptions options) {
+            this.options = options;
+            this.deadlineNanos = System.nanoTime() + options.getTimeout().map(Duration::toNanos).orElse(0L);
+        }
+
+        private Connection getConnection() {
+            if(connection == null) {
+                connection = begin();
+            }
+            return connection;
+        }
+
+        private Connection begin() {
+            final Connection newConnection;
+            try {
+                newConnection = ConnectionManager.this.getConnection(options.isReadOnly());
+            }
+            catch(SQLException e) {
+                throw new RuntimeException(e);
+            }
+            try {
+                if(options.isReadOnly()) {
+                    newConnection.setReadOnly(true);
+                    readOnlyApplied = true;
+                }
+                if(options.getIsolation() != Isolation.DEFAULT) {
+                    final int isolation = newConnection.getTransactionIsolation();
+                    newConnection.setTransactionIsolation(options.getIsolation().getLevel());
+                    previousIsolation = isolation;
+                }
+                newConnection.setAutoCommit(false);
+                return newConnection;
+            }
+            catch(SQLException e) {
+                try {
+                    reset(newConnection);
+                    newConnection.close();
+                }
+                catch(SQLException e1) {
+                    throw new RuntimeException("Unable to close connection", e);
+                }
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Resets the read-only mode and isolation level of the connection, so that they do not leak into whatever uses
+         * the connection next, and closes it.
+         */
+        private void close() throws SQLException {
+            reset(connection);
+            connection.close();
+        }
+
+        private void reset(Connection connection) {
+            try {
+                if(readOnlyApplied) {
+                    connection.setReadOnly(false);
+                }
+                if(previousIsolation >= 0) {
+                    connection.setTransactionIsolation(previousIsolation);
+                }
+            }
+            catch(SQLException e) {
+                LOGGER.warn("Unable to reset read-only mode and isolation level of connection", e);
+            }
+        }
     }
 
 }
@@ -0,0 +1,32 @@
+package no.obje.jdbcmiddleware.service;
+
+import java.sql.Connection;
+
+/**
+ * The isolation level of a transaction, see {@link Connection#setTransactionIsolation(int)}.
+ */
+public enum Isolation {
+
+    /**
+     * Leaves the isolation level of the connection as it is, which is the default of the driver unless the data source
+     * configures it otherwise.
+     */
+    DEFAULT(-1),
+    READ_UNCOMMITTED(Connection.TRANSACTION_READ_UNCOMMITTED),
+    READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED),
+    REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ),
+    SERIALIZABLE(Connection.TRANSACTION_SERIALIZABLE);
+
+    private final int level;
+
+    Isolation(int level) {
+        this.level = level;
+    }
+
+    /**
+     * @return the JDBC isolation level, or -1 for {@link #DEFAULT}
+     */
+    public int getLevel() {
+        return level;
+    }
+}
@@ -1,23 +1,51 @@
 package no.obje.jdbcmiddleware.service;
 
+import no.obje.jdbcmiddleware.domain.ParameterSource;
 import no.obje.jdbcmiddleware.domain.QueryResult;
+import no.obje.jdbcmiddleware.domain.RowCallback;
 import no.obje.jdbcmiddleware.domain.RowMapper;
-import no.obje.jdbcmiddleware.domain.StatementCallback;
 import no.obje.jdbcmiddleware.exception.MalformedSqlException;
+import no.obje.jdbcmiddleware.exception.QueryTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
 import java.sql.*;
-import java.sql.Date;
-import java.time.LocalDate;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class JdbcService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JdbcService.class);
 
+    private static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+
+    private static final int MAX_BULK_INSERT_TEMPLATES = 256;
+
+    private static final int MAX_SQL_TEMPLATES = 1024;
+
+    /**
+     * The initial capacity of the update counts of a batch of unknown size, which grows as chunks are executed, since
+     * the chunk size may be far larger than the number of rows.
+     */
+    private static final int INITIAL_UPDATE_COUNTS = 1024;
+
     private final ConnectionManager connectionManager;
+    private final StatementCache statementCache;
+    private final ArgumentBinders argumentBinders;
+    private final int maxStatementParameters;
+    private final long queryTimeoutNanos;
+    private final RowLimitSyntax rowLimitSyntax;
+    private final Map<String, BulkInsertSql> bulkInsertTemplates;
+    private final Map<String, SqlTemplate> namedSqlTemplates;
+    private final Map<String, SqlTemplate> positionalSqlTemplates;
 
 
     /**
@@ -26,7 +54,7 @@ public class JdbcService {
      * @param connectionManager connection manager used for managing connections
      */
     public JdbcService(ConnectionManager connectionManager) {
-        this.connectionManager = Objects.requireNonNull(connectionManager);
+        this(connectionManager, JdbcServiceConfig.defaults());
     }
 
     /**
@@ -35,57 +63,216 @@ public class JdbcService {
      * @param dataSource the data source to be used for connection management
      */
     public JdbcService(DataSource dataSource) {
-        this.connectionManager = new ConnectionManager(Objects.requireNonNull(dataSource));
+        this(new ConnectionManager(Objects.requireNonNull(dataSource)));
+    }
+
+    /**
+     * Use this constructor if you intend to use transaction functionality together with optional configuration
+     *
+     * @param connectionManager connection manager used for managing connections
+     * @param config optional configuration of the service
+     */
+    public JdbcService(ConnectionManager connectionManager, JdbcServiceConfig config) {
+        this.connectionManager = Objects.requireNonNull(connectionManager);
+        this.statementCache = Objects.requireNonNull(config).getStatementCache().orElse(null);
+        this.argumentBinders = config.getArgumentBinders();
+        this.maxStatementParameters = config.getMaxStatementParameters();
+        this.queryTimeoutNanos = config.getQueryTimeout().map(Duration::toNanos).orElse(0L);
+        this.rowLimitSyntax = config.getRowLimitSyntax();
+        this.bulkInsertTemplates = new ConcurrentHashMap<>();
+        this.namedSqlTemplates = new ConcurrentHashMap<>();
+        this.positionalSqlTemplates = new ConcurrentHashMap<>();
+    }
+
+    private JdbcService(JdbcService jdbcService, long queryTimeoutNanos) {
+        this.connectionManager = jdbcService.connectionManager;
+        this.statementCache = jdbcService.statementCache;
+        this.argumentBinders = jdbcService.argumentBinders;
+        this.maxStatementParameters = jdbcService.maxStatementParameters;
+        this.queryTimeoutNanos = queryTimeoutNanos;
+        this.rowLimitSyntax = jdbcService.rowLimitSyntax;
+        this.bulkInsertTemplates = jdbcService.bulkInsertTemplates;
+        this.namedSqlTemplates = jdbcService.namedSqlTemplates;
+        this.positionalSqlTemplates = jdbcService.positionalSqlTemplates;
+    }
+
+    /**
+     * Returns a service running its statements with the given query timeout instead of the one of the configuration,
+     * sharing everything else with this service. Creating one per call is cheap.
+     *
+     * @param queryTimeout how long every statement may run, or null for no timeout
+     */
+    public JdbcService withQueryTimeout(Duration queryTimeout) {
+        if(queryTimeout != null && (queryTimeout.isZero() || queryTimeout.isNegative())) {
+            throw new IllegalArgumentException("Query timeout must be positive");
+        }
+        return new JdbcService(this, queryTimeout == null ? 0L : queryTimeout.toNanos());
     }
 
     public <T> Optional<T> queryForSingle(String sql, RowMapper<T> rowMapper, Object... args) {
-        return connectionManager.doWithConnection(connection ->
-                withStatement(connection, sql, Arrays.asList(args), statement ->
-                        executeSingle(statement, rowMapper)
+        return queryForSingle(sql, QueryOptions.defaults(), rowMapper, args);
+    }
+
+    /**
+     * Same as {@link #queryForSingle(String, RowMapper, Object...)}, with the given options applied to the statement.
+     * Statements with options other than the defaults are not taken from the statement cache.
+     */
+    public <T> Optional<T> queryForSingle(String sql, QueryOptions options, RowMapper<T> rowMapper, Object... args) {
+        if(SqlTemplate.hasCollection(args, argumentBinders)) {
+            for(SqlTemplate.Expansion expansion : expand(sql, args)) {
+                final Optional<T> result = queryForSingle(expansion.getSql(), options, rowMapper, expansion.getArgs());
+                if(result.isPresent()) {
+                    return result;
+                }
+            }
+            return Optional.empty();
+        }
+        final StatementPreparer preparer = preparer(options);
+        return connectionManager.doWithReadConnection(connection ->
+                withStatement(connection, sql, Arrays.asList(args), preparer, (statement, execution) ->
+                        executeSingle(statement, rowMapper, execution)
                 )
         );
     }
 
     public <T> List<T> queryForList(String sql, RowMapper<T> rowMapper, Object... args) {
-        return connectionManager.doWithConnection(connection ->
-                withStatement(connection, sql, Arrays.asList(args), statement ->
-                        executeList(statement, rowMapper)
+        return queryForList(sql, QueryOptions.defaults(), rowMapper, args);
+    }
+
+    /**
+     * Same as {@link #queryForList(String, RowMapper, Object...)}, with the given options applied to the statement.
+     * Statements with options other than the defaults are not taken from the statement cache.
+     */
+    public <T> List<T> queryForList(String sql, QueryOptions options, RowMapper<T> rowMapper, Object... args) {
+        if(SqlTemplate.hasCollection(args, argumentBinders)) {
+            final List<T> result = new ArrayList<>();
+            for(SqlTemplate.Expansion expansion : expand(sql, args)) {
+                result.addAll(queryForList(expansion.getSql(), options, rowMapper, expansion.getArgs()));
+            }
+            return result;
+        }
+        final StatementPreparer preparer = preparer(options);
+        return connectionManager.doWithReadConnection(connection ->
+                withStatement(connection, sql, Arrays.asList(args), preparer, (statement, execution) ->
+                        executeList(statement, rowMapper, execution)
                 )
         );
     }
 
     public Long insertAndReturnKey(String sql, String keyColumn, Object... args) {
+        if(SqlTemplate.hasCollection(args, argumentBinders)) {
+            final SqlTemplate.Expansion expansion = expandToSingleStatement(sql, args);
+            return insertAndReturnKey(expansion.getSql(), keyColumn, expansion.getArgs());
+        }
         return connectionManager.doWithConnection(connection ->
-                withStatementAndReturnGeneratedKeys(connection, sql, Arrays.asList(args), statement ->
-                        executeInsert(statement, keyColumn)
+                withStatementAndReturnGeneratedKeys(connection, sql, Arrays.asList(args), (statement, execution) ->
+                        executeInsert(statement, keyColumn, execution)
                 )
         );
 
     }
 
+    /*
+     * The methods below take named parameters, such as :name, instead of positional ones. A parameter with a
+     * collection value is expanded into a list of positional parameters, the same way as collection arguments are.
+     */
+
+    public <T> Optional<T> queryForSingle(String sql, RowMapper<T> rowMapper, ParameterSource parameters) {
+        return withNamedParameters(sql, parameters, (positionalSql, args) ->
+                queryForSingle(positionalSql, rowMapper, args)
+        );
+    }
+
+    public <T> List<T> queryForList(String sql, RowMapper<T> rowMapper, ParameterSource parameters) {
+        return withNamedParameters(sql, parameters, (positionalSql, args) ->
+                queryForList(positionalSql, rowMapper, args)
+        );
+    }
+
+    public Long insertAndReturnKey(String sql, String keyColumn, ParameterSource parameters) {
+        return withNamedParameters(sql, parameters, (positionalSql, args) ->
+                insertAndReturnKey(positionalSql, keyColumn, args)
+        );
+    }
+
+    public void insert(String sql, ParameterSource parameters) {
+        withNamedParameters(sql, parameters, (positionalSql, args) -> {
+            insert(positionalSql, args);
+            return null;
+        });
+    }
+
+    public void updateSingle(String sql, ParameterSource parameters) {
+        withNamedParameters(sql, parameters, (positionalSql, args) -> {
+            updateSingle(positionalSql, args);
+            return null;
+        });
+    }
+
+    public Integer update(String sql, ParameterSource parameters) {
+        return withNamedParameters(sql, parameters, this::update);
+    }
+
+    public void deleteSingle(String sql, ParameterSource parameters) {
+        updateSingle(sql, parameters);
+    }
+
+    public Integer delete(String sql, ParameterSource parameters) {
+        return update(sql, parameters);
+    }
+
+    /**
+     * Inserts the given rows as a single JDBC batch, and reads the generated key of every row back from the generated
+     * keys of the batch.
+     *
+     * @param sql the insert statement to execute for every row
+     * @param keyColumn the name of the generated key column
+     * @param rows the arguments of each row
+     * @return the generated key of every row, in the same order as the given rows
+     */
+    public long[] insertAllAndReturnKeys(String sql, String keyColumn, Iterable<Object[]> rows) {
+        if(keyColumn == null || keyColumn.isEmpty()) {
+            throw new IllegalArgumentException("Key column must be specified");
+        }
+        if(rows == null) {
+            throw new IllegalArgumentException("Rows must be specified");
+        }
+        return connectionManager.doWithConnection(connection ->
+                withStatementAndReturnGeneratedKeys(connection, sql, Collections.emptyList(), (statement, execution) ->
+                        executeInsertAll(statement, keyColumn, rows, execution)
+                )
+        );
+    }
+
     public void insert(String sql, Object... args) {
+        if(SqlTemplate.hasCollection(args, argumentBinders)) {
+            for(SqlTemplate.Expansion expansion : expand(sql, args)) {
+                insert(expansion.getSql(), expansion.getArgs());
+            }
+            return;
+        }
         connectionManager.doWithConnection(connection ->
-                withStatement(connection, sql, Arrays.asList(args), statement -> {
-                    executeInsert(statement);
+                withStatement(connection, sql, Arrays.asList(args), (statement, execution) -> {
+                    executeInsert(statement, execution);
                     return null;
                 })
         );
     }
 
     public void updateSingle(String sql, Object... args) {
+        if(SqlTemplate.hasCollection(args, argumentBinders)) {
+            final SqlTemplate.Expansion expansion = expandToSingleStatement(sql, args);
+            updateSingle(expansion.getSql(), expansion.getArgs());
+            return;
+        }
         connectionManager.doWithConnection(connection ->
-                withStatement(connection, sql, Arrays.asList(args), statement -> {
-                    try {
-                        int rowsAffected = statement.executeUpdate();
-                        if(rowsAffected > 1) {
-                            throw new IllegalStateException("More than one row was affected by query: '" + sql + "'");
-                        }
-                        if(rowsAffected < 1) {
-                            throw new IllegalStateException("No row was affected by query: '" + sql + "'");
-                        }
+                withStatement(connection, sql, Arrays.asList(args), (statement, execution) -> {
+                    int rowsAffected = executeUpdate(statement, execution);
+                    if(rowsAffected > 1) {
+                        throw new IllegalStateException("More than one row was affected by query: '" + sql + "'");
                     }
-                    catch(SQLException e) {
-                        throw new RuntimeException(e);
+                    if(rowsAffected < 1) {
+                        throw new IllegalStateException("No row was affected by query: '" + sql + "'");
                     }
                     return null;
                 })
@@ -93,15 +280,17 @@ public class JdbcService {
     }
 
     public Integer update(String sql, Object... args) {
+        if(SqlTemplate.hasCollection(args, argumentBinders)) {
+            int rowsAffected = 0;
+            for(SqlTemplate.Expansion expansion : expand(sql, args)) {
+                rowsAffected += update(expansion.getSql(), expansion.getArgs());
+            }
+            return rowsAffected;
+        }
         return connectionManager.doWithConnection(connection ->
-                withStatement(connection, sql, Arrays.asList(args), statement -> {
-                    try {
-                        return statement.executeUpdate();
-                    }
-                    catch(SQLException e) {
-                        throw new RuntimeException(e);
-                    }
-                })
+                withStatement(connection, sql, Arrays.asList(args), (statement, execution) ->
+                        executeUpdate(statement, execution)
+                )
         );
     }
 
@@ -113,62 +302,492 @@ public class JdbcService {
         return update(sql, args);
     }
 
-    private <R> R withStatement(Connection connection, String sql, List<Object> args, StatementCallback<R> callback) {
-        if(sql == null || sql.isEmpty()) {
-            throw new IllegalArgumentException("SQL String cannot be blank or null");
+    /**
+     * Creates a pager reading the result of the given query one page at a time, seeking past the key of the last row
+     * of the previous page instead of skipping rows with an offset, so that every page costs the same as the first.
+     *
+     * @param sql the query to page through, which must not be ordered itself
+     * @param rowMapper maps every row
+     * @param pageSize the maximum number of rows per page
+     * @param keyColumns the non-null columns uniquely identifying a row, which the result is ordered by
+     * @param args the arguments of the query, where collections are expanded into a single statement
+     */
+    public <T> KeysetPager<T> keysetPager(
+            String sql,
+            RowMapper<T> rowMapper,
+            int pageSize,
+            List<String> keyColumns,
+            Object... args
+    ) {
+        validateSql(sql);
+        if(SqlTemplate.hasCollection(args, argumentBinders)) {
+            final SqlTemplate.Expansion expansion = expandToSingleStatement(sql, args);
+            return new KeysetPager<>(
+                    this,
+                    expansion.getSql(),
+                    rowMapper,
+                    pageSize,
+                    keyColumns,
+                    Arrays.asList(expansion.getArgs())
+            );
         }
-        LOGGER.debug("Executing query: '{}' with values {}", sql, args);
-        try(PreparedStatement statement = connection.prepareStatement(sql)) {
-            final R result = executeStatement(statement, args, callback);
-            LOGGER.info("Executed query: '{}' with values {}", sql, args);
-            return result;
+        return new KeysetPager<>(this, sql, rowMapper, pageSize, keyColumns, Arrays.asList(args));
+    }
+
+    /**
+     * Same as {@link #keysetPager(String, RowMapper, int, List, Object...)}, with a single key column.
+     */
+    public <T> KeysetPager<T> keysetPager(
+            String sql,
+            RowMapper<T> rowMapper,
+            int pageSize,
+            String keyColumn,
+            Object... args
+    ) {
+        return keysetPager(sql, rowMapper, pageSize, Collections.singletonList(keyColumn), args);
+    }
+
+    /**
+     * Same as {@link #queryForStream(String, int, RowMapper, Object...)}, using a fetch size of
+     * {@value #DEFAULT_STREAM_FETCH_SIZE} rows.
+     */
+    public <T> Stream<T> queryForStream(String sql, RowMapper<T> rowMapper, Object... args) {
+        return queryForStream(sql, DEFAULT_STREAM_FETCH_SIZE, rowMapper, args);
+    }
+
+    /**
+     * Executes the given query and returns a lazy stream over its rows. Rows are read from the result set one at a
+     * time as the stream is consumed, so the result never has to fit in memory. The connection, statement and result
+     * set are held until the stream is closed, so the stream must always be closed, preferably with
+     * try-with-resources. The query timeout covers executing the query, and a slow consumer of the stream never
+     * gets the statement cancelled. Note that some drivers, like PostgreSQL, only stream from a cursor inside a
+     * transaction.
+     *
+     * @param sql the query to execute
+     * @param fetchSize the number of rows the driver should fetch from the database at a time
+     * @param rowMapper maps every row to an element of the stream
+     * @param args the arguments of the query
+     * @return a stream which must be closed after use
+     */
+    public <T> Stream<T> queryForStream(String sql, int fetchSize, RowMapper<T> rowMapper, Object... args) {
+        return queryForStream(sql, QueryOptions.defaults().withFetchSize(fetchSize), rowMapper, args);
+    }
+
+    /**
+     * Same as {@link #queryForStream(String, int, RowMapper, Object...)}, with the given options applied to the
+     * statement. A fetch size of 0 leaves it to the driver, which often means reading the whole result at once.
+     */
+    public <T> Stream<T> queryForStream(String sql, QueryOptions options, RowMapper<T> rowMapper, Object... args) {
+        if(rowMapper == null) {
+            throw new IllegalArgumentException("Row mapper must be specified");
+        }
+        Objects.requireNonNull(options);
+        if(SqlTemplate.hasCollection(args, argumentBinders)) {
+            return expand(sql, args).stream().flatMap(expansion ->
+                    queryForStream(expansion.getSql(), options, rowMapper, expansion.getArgs())
+            );
+        }
+        validateSql(sql);
+        final StatementPreparer preparer = options::prepare;
+        final List<Object> argList = Arrays.asList(args);
+        LOGGER.debug("Executing query: '{}' with values {}", sql, argList);
+        final Connection connection = connectionManager.acquireReadConnection();
+        final QueryExecution execution = new QueryExecution(sql, argList);
+        PreparedStatement statement = null;
+        StatementTimeout timeout = null;
+        ResultSet resultSet = null;
+        try {
+            statement = preparer.prepare(connection, sql);
+            timeout = startTimeout(statement);
+            try {
+                bindArgs(statement, argList, execution);
+                execution.prepared();
+                resultSet = statement.executeQuery();
+            }
+            finally {
+                closeOpenedStreams(execution);
+                if(timeout != null) {
+                    timeout.close();
+                }
+            }
+            execution.executed();
+            final ResultSet openResultSet = resultSet;
+            final PreparedStatement openStatement = statement;
+            final ResultSetSpliterator<T> spliterator = new ResultSetSpliterator<>(resultSet, rowMapper);
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                execution.mapped(spliterator.getRowCount());
+                closeStreamResources(openResultSet, openStatement, connection, execution, null);
+            });
         }
         catch(SQLSyntaxErrorException e) {
+            closeStreamResources(resultSet, statement, connection, execution, e);
             throw new MalformedSqlException(e);
         }
         catch(SQLException e) {
-            throw new RuntimeException(e);
+            closeStreamResources(resultSet, statement, connection, execution, e);
+            throw timeout != null && timeout.isTimeout(e) ? timedOut(timeout, e) : new RuntimeException(e);
         }
+        catch(RuntimeException | Error e) {
+            closeStreamResources(resultSet, statement, connection, execution, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #forEachRow(String, int, RowCallback, Object...)}, using a fetch size of
+     * {@value #DEFAULT_STREAM_FETCH_SIZE} rows.
+     */
+    public void forEachRow(String sql, RowCallback rowCallback, Object... args) {
+        forEachRow(sql, DEFAULT_STREAM_FETCH_SIZE, rowCallback, args);
+    }
+
+    /**
+     * Executes the given query and hands every row to the given callback as it is read from the result set, without
+     * collecting the rows in memory.
+     *
+     * @param sql the query to execute
+     * @param fetchSize the number of rows the driver should fetch from the database at a time
+     * @param rowCallback invoked once for every row
+     * @param args the arguments of the query
+     */
+    public void forEachRow(String sql, int fetchSize, RowCallback rowCallback, Object... args) {
+        forEachRow(sql, QueryOptions.defaults().withFetchSize(fetchSize), rowCallback, args);
+    }
+
+    /**
+     * Same as {@link #forEachRow(String, int, RowCallback, Object...)}, with the given options applied to the
+     * statement.
+     */
+    public void forEachRow(String sql, QueryOptions options, RowCallback rowCallback, Object... args) {
+        if(rowCallback == null) {
+            throw new IllegalArgumentException("Row callback must be specified");
+        }
+        Objects.requireNonNull(options);
+        if(SqlTemplate.hasCollection(args, argumentBinders)) {
+            for(SqlTemplate.Expansion expansion : expand(sql, args)) {
+                forEachRow(expansion.getSql(), options, rowCallback, expansion.getArgs());
+            }
+            return;
+        }
+        final StatementPreparer preparer = options::prepare;
+        connectionManager.doWithReadConnection(connection ->
+                withStatement(connection, sql, Arrays.asList(args), preparer, (statement, execution) -> {
+                    executeForEach(statement, rowCallback, execution);
+                    return null;
+                })
+        );
+    }
+
+    /**
+     * Executes the given statement once for every row, reusing a single prepared statement and sending the rows to the
+     * database as JDBC batches of at most chunkSize rows. Outside of a transaction each chunk is committed as it is
+     * executed.
+     *
+     * @param sql the statement to execute for every row
+     * @param rows the arguments of each row
+     * @param chunkSize the maximum number of rows sent to the database per batch
+     * @return the update count of every row, in the same order as the given rows
+     */
+    public int[] batchUpdate(String sql, Iterable<Object[]> rows, int chunkSize) {
+        if(rows == null) {
+            throw new IllegalArgumentException("Rows must be specified");
+        }
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be a positive number");
+        }
+        return connectionManager.doWithConnection(connection ->
+                withStatement(connection, sql, Collections.emptyList(), (statement, execution) ->
+                        executeBatch(statement, rows, chunkSize, execution)
+                )
+        );
+    }
+
+    public int[] batchInsert(String sql, Iterable<Object[]> rows, int chunkSize) {
+        return batchUpdate(sql, rows, chunkSize);
+    }
+
+    public int[] batchDelete(String sql, Iterable<Object[]> rows, int chunkSize) {
+        return batchUpdate(sql, rows, chunkSize);
+    }
+
+    /**
+     * Inserts the given rows by rewriting the given single row insert statement, such as
+     * {@code INSERT INTO customer (id, name) VALUES (?, ?)}, into statements inserting many rows each. Rows are sent 256,
+     * 64 or 16 at a time, largest first, as far as the max statement parameters of the configuration allows, and the rows
+     * left over are sent as a JDBC batch. Outside of a transaction each statement is committed as it is executed.
+     *
+     * @param sql an insert statement with a single VALUES row
+     * @param rows the arguments of each row
+     * @return the number of rows inserted
+     */
+    public int bulkInsert(String sql, Iterable<Object[]> rows) {
+        if(rows == null) {
+            throw new IllegalArgumentException("Rows must be specified");
+        }
+        validateSql(sql);
+        final BulkInsertSql bulkInsertSql = bulkInsertSql(sql);
+        return connectionManager.doWithConnection(connection -> {
+            final Iterator<Object[]> iterator = rows.iterator();
+            final List<Object[]> buffer = new ArrayList<>();
+            int numberOfRows = 0;
+            for(int bucket = 0; bucket < BulkInsertSql.BUCKET_SIZES.length; bucket++) {
+                final int bucketSize = BulkInsertSql.BUCKET_SIZES[bucket];
+                if(bucketSize * bulkInsertSql.getRowWidth() > maxStatementParameters) {
+                    continue;
+                }
+                fillBuffer(buffer, iterator, bucketSize);
+                if(buffer.size() >= bucketSize) {
+                    numberOfRows += withStatement(
+                            connection,
+                            bulkInsertSql.getSql(bucket),
+                            Collections.emptyList(),
+                            (statement, execution) -> executeBulk(
+                                    statement,
+                                    buffer,
+                                    iterator,
+                                    bucketSize,
+                                    bulkInsertSql.getRowWidth(),
+                                    execution
+                            )
+                    );
+                }
+            }
+            if(!buffer.isEmpty() || iterator.hasNext()) {
+                final Iterable<Object[]> remainingRows = Stream.concat(
+                        buffer.stream(),
+                        StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                )::iterator;
+                final int[] updateCounts = withStatement(
+                        connection,
+                        sql,
+                        Collections.emptyList(),
+                        (statement, execution) ->
+                                executeBatch(statement, remainingRows, BulkInsertSql.BUCKET_SIZES[0], execution)
+                );
+                for(int updateCount : updateCounts) {
+                    numberOfRows += updateCount == Statement.SUCCESS_NO_INFO ? 1 : updateCount;
+                }
+            }
+            return numberOfRows;
+        });
+    }
+
+    /**
+     * Same as {@link #queryForList(String, RowMapper, Object...)}, reading at most maxRows rows.
+     */
+    <T> List<T> queryForList(String sql, int maxRows, RowMapper<T> rowMapper, List<Object> args) {
+        if(maxRows < 1) {
+            throw new IllegalArgumentException("Max rows must be a positive number");
+        }
+        final StatementPreparer preparer = preparer(QueryOptions.defaults().withMaxRows(maxRows));
+        return connectionManager.doWithReadConnection(connection ->
+                withStatement(connection, sql, args, preparer, (statement, execution) ->
+                        executeList(statement, rowMapper, execution)
+                )
+        );
+    }
+
+    ConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    RowLimitSyntax getRowLimitSyntax() {
+        return rowLimitSyntax;
+    }
+
+    private <R> R withStatement(Connection connection, String sql, List<Object> args, ExecutionCallback<R> callback) {
+        return withStatement(
+                connection,
+                sql,
+                args,
+                (c, s) -> prepareStatement(c, s, Statement.NO_GENERATED_KEYS),
+                callback
+        );
     }
 
     private <R> R withStatementAndReturnGeneratedKeys(
             Connection connection,
             String sql,
             List<Object> args,
-            StatementCallback<R> callback
+            ExecutionCallback<R> callback
     ) {
-        if(sql == null || sql.isEmpty()) {
-            throw new IllegalArgumentException("SQL String cannot be blank or null");
-        }
+        return withStatement(
+                connection,
+                sql,
+                args,
+                (c, s) -> prepareStatement(c, s, Statement.RETURN_GENERATED_KEYS),
+                callback
+        );
+    }
+
+    private <R> R withStatement(
+            Connection connection,
+            String sql,
+            List<Object> args,
+            StatementPreparer preparer,
+            ExecutionCallback<R> callback
+    ) {
+        validateSql(sql);
         LOGGER.debug("Executing query: '{}' with values {}", sql, args);
-        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            final R result = executeStatement(statement, args, callback);
-            LOGGER.info("Executed query: '{}' with values {}", sql, args);
-            return result;
+        final QueryExecution execution = new QueryExecution(sql, args);
+        Throwable failure = null;
+        try {
+            final PreparedStatement statement = preparer.prepare(connection, sql);
+            StatementTimeout timeout = null;
+            try {
+                timeout = startTimeout(statement);
+                return executeStatement(statement, args, execution, callback);
+            }
+            catch(RuntimeException e) {
+                throw timeout != null && timeout.isTimeout(e) ? timedOut(timeout, e) : e;
+            }
+            finally {
+                try {
+                    if(timeout != null) {
+                        timeout.close();
+                        if(statementCache != null) {
+                            statement.setQueryTimeout(0);
+                        }
+                    }
+                }
+                finally {
+                    try {
+                        closeOpenedStreams(execution);
+                    }
+                    finally {
+                        releaseStatement(statement);
+                    }
+                }
+            }
         }
         catch(SQLSyntaxErrorException e) {
+            failure = e;
             throw new MalformedSqlException(e);
         }
         catch(SQLException e) {
+            failure = e;
             throw new RuntimeException(e);
         }
+        catch(RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        }
+        finally {
+            publish(execution, failure);
+        }
+    }
+
+    private void publish(QueryExecution execution, Throwable failure) {
+        try {
+            connectionManager.getQueryListener().queryExecuted(execution.finish(failure));
+        }
+        catch(RuntimeException e) {
+            LOGGER.warn("Query listener failed", e);
+        }
+    }
+
+    private PreparedStatement prepareStatement(Connection connection, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        if(statementCache != null) {
+            return statementCache.prepareStatement(connection, sql, autoGeneratedKeys);
+        }
+        return autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS
+                ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(sql);
     }
 
-    private <R> R executeStatement(PreparedStatement statement, List<Object> args, StatementCallback<R> callback) {
+    private void releaseStatement(PreparedStatement statement) throws SQLException {
+        if(statementCache != null) {
+            statementCache.release(statement);
+        }
+        else {
+            statement.close();
+        }
+    }
+
+    /**
+     * Starts the timeout of the given statement, which is the query timeout of this service or the time left of the
+     * transaction in progress, whichever is shorter.
+     *
+     * @return the started timeout, or null if the statement has no timeout
+     */
+    private StatementTimeout startTimeout(PreparedStatement statement) throws SQLException {
+        final long timeoutNanos = Math.min(
+                queryTimeoutNanos > 0 ? queryTimeoutNanos : Long.MAX_VALUE,
+                connectionManager.getRemainingTransactionNanos()
+        );
+        return timeoutNanos == Long.MAX_VALUE ? null : StatementTimeout.start(statement, timeoutNanos);
+    }
+
+    private static QueryTimeoutException timedOut(StatementTimeout timeout, Exception e) {
+        return new QueryTimeoutException("Statement timed out after " + Duration.ofNanos(timeout.getTimeoutNanos()), e);
+    }
+
+    private void validateSql(String sql) {
+        if(sql == null || sql.isEmpty()) {
+            throw new IllegalArgumentException("SQL String cannot be blank or null");
+        }
+    }
+
+    /**
+     * Prepares statements with the given options, taking statements with the default options from the statement cache.
+     */
+    private StatementPreparer preparer(QueryOptions options) {
+        if(Objects.requireNonNull(options).isDefault()) {
+            return (connection, sql) -> prepareStatement(connection, sql, Statement.NO_GENERATED_KEYS);
+        }
+        return options::prepare;
+    }
+
+    private <R> R executeStatement(
+            PreparedStatement statement,
+            List<Object> args,
+            QueryExecution execution,
+            ExecutionCallback<R> callback
+    ) {
+        bindArgs(statement, args, execution);
+        execution.prepared();
+        return callback.run(statement, execution);
+    }
+
+    private void bindArgs(PreparedStatement statement, List<Object> args, QueryExecution execution) {
         for(int i = 1; i < args.size() + 1; i++) {
-            setArg(statement, i, args.get(i - 1));
+            setArg(statement, i, args.get(i - 1), execution);
         }
-        return callback.run(statement);
     }
 
-    private <R> Optional<R> executeSingle(PreparedStatement preparedStatement, RowMapper<R> rowMapper) {
+    /**
+     * Closes the streams opened to bind files, which the driver may not have read to the end.
+     */
+    private void closeOpenedStreams(QueryExecution execution) {
+        final List<Closeable> openedStreams = execution.getOpenedStreams();
+        for(int i = 0; i < openedStreams.size(); i++) {
+            try {
+                openedStreams.get(i).close();
+            }
+            catch(IOException e) {
+                LOGGER.debug("Unable to close argument stream", e);
+            }
+        }
+        openedStreams.clear();
+    }
+
+    private <R> Optional<R> executeSingle(
+            PreparedStatement preparedStatement,
+            RowMapper<R> rowMapper,
+            QueryExecution execution
+    ) {
         if(rowMapper == null) {
             throw new IllegalArgumentException("Row mapper must be specified");
         }
         try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            execution.executed();
             if(resultSet.next()) {
-                return Optional.of(rowMapper.mapRow(new QueryResult(resultSet)));
+                final Optional<R> result = Optional.of(rowMapper.mapRow(new QueryResult(resultSet)));
+                execution.mapped(1);
+                return result;
             }
+            execution.mapped(0);
             return Optional.empty();
         }
         catch(SQLException e) {
@@ -176,16 +795,22 @@ public class JdbcService {
         }
     }
 
-    private <R> List<R> executeList(PreparedStatement preparedStatement, RowMapper<R> rowMapper) {
+    private <R> List<R> executeList(
+            PreparedStatement preparedStatement,
+            RowMapper<R> rowMapper,
+            QueryExecution execution
+    ) {
         if(rowMapper == null) {
             throw new IllegalArgumentException("Row mapper must be specified");
         }
         try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            execution.executed();
             final ArrayList<R> resultList = new ArrayList<>();
+            final QueryResult queryResult = new QueryResult(resultSet);
             while(resultSet.next()) {
-                final QueryResult queryResult = new QueryResult(resultSet);
                 resultList.add(rowMapper.mapRow(queryResult));
             }
+            execution.mapped(resultList.size());
             return resultList;
         }
         catch(SQLException e) {
@@ -193,68 +818,315 @@ public class JdbcService {
         }
     }
 
-    private Long executeInsert(PreparedStatement statement, String keyColumn) {
-        if(keyColumn == null || keyColumn.isEmpty()) {
-            throw new IllegalArgumentException("Key column must be specified");
+    private int[] executeBatch(
+            PreparedStatement statement,
+            Iterable<Object[]> rows,
+            int chunkSize,
+            QueryExecution execution
+    ) {
+        try {
+            int[] updateCounts = new int[rows instanceof Collection
+                    ? ((Collection<?>)rows).size()
+                    : Math.min(chunkSize, INITIAL_UPDATE_COUNTS)];
+            int numberOfRows = 0;
+            int rowsInChunk = 0;
+            for(Object[] row : rows) {
+                if(row == null) {
+                    throw new IllegalArgumentException("Rows cannot contain null");
+                }
+                bindArgs(statement, Arrays.asList(row), execution);
+                statement.addBatch();
+                if(++rowsInChunk == chunkSize) {
+                    updateCounts = appendUpdateCounts(updateCounts, numberOfRows, statement.executeBatch());
+                    closeOpenedStreams(execution);
+                    numberOfRows += rowsInChunk;
+                    rowsInChunk = 0;
+                }
+            }
+            if(rowsInChunk > 0) {
+                updateCounts = appendUpdateCounts(updateCounts, numberOfRows, statement.executeBatch());
+                numberOfRows += rowsInChunk;
+            }
+            execution.updated(numberOfRows);
+            return updateCounts.length == numberOfRows ? updateCounts : Arrays.copyOf(updateCounts, numberOfRows);
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private <R> R withNamedParameters(
+            String sql,
+            ParameterSource parameters,
+            BiFunction<String, Object[], R> operation
+    ) {
+        if(parameters == null) {
+            throw new IllegalArgumentException("Parameters must be specified");
+        }
+        validateSql(sql);
+        final SqlTemplate sqlTemplate = sqlTemplate(namedSqlTemplates, sql, SqlTemplate::parseNamed);
+        return operation.apply(sqlTemplate.getSql(), sqlTemplate.values(parameters));
+    }
+
+    private List<SqlTemplate.Expansion> expand(String sql, Object[] args) {
+        validateSql(sql);
+        final SqlTemplate sqlTemplate = sqlTemplate(positionalSqlTemplates, sql, SqlTemplate::parsePositional);
+        return sqlTemplate.expand(args, maxStatementParameters, argumentBinders);
+    }
+
+    private SqlTemplate.Expansion expandToSingleStatement(String sql, Object[] args) {
+        final List<SqlTemplate.Expansion> expansions = expand(sql, args);
+        if(expansions.size() > 1) {
+            throw new IllegalArgumentException(
+                    "Collection arguments exceed the max statement parameters, and cannot be split for this operation"
+            );
+        }
+        return expansions.get(0);
+    }
+
+    private SqlTemplate sqlTemplate(
+            Map<String, SqlTemplate> templates,
+            String sql,
+            Function<String, SqlTemplate> parser
+    ) {
+        final SqlTemplate sqlTemplate = templates.get(sql);
+        if(sqlTemplate != null) {
+            return sqlTemplate;
+        }
+        final SqlTemplate parsed = parser.apply(sql);
+        if(templates.size() < MAX_SQL_TEMPLATES) {
+            templates.putIfAbsent(sql, parsed);
+        }
+        return parsed;
+    }
+
+    private BulkInsertSql bulkInsertSql(String sql) {
+        final BulkInsertSql bulkInsertSql = bulkInsertTemplates.get(sql);
+        if(bulkInsertSql != null) {
+            return bulkInsertSql;
+        }
+        final BulkInsertSql parsed = BulkInsertSql.parse(sql);
+        if(bulkInsertTemplates.size() < MAX_BULK_INSERT_TEMPLATES) {
+            bulkInsertTemplates.putIfAbsent(sql, parsed);
+        }
+        return parsed;
+    }
+
+    private void fillBuffer(List<Object[]> buffer, Iterator<Object[]> rows, int size) {
+        while(buffer.size() < size && rows.hasNext()) {
+            buffer.add(rows.next());
         }
+    }
+
+    /**
+     * Executes the given multi-row statement for as long as the buffer holds enough rows, refilling it from the given
+     * rows after each execution.
+     */
+    private int executeBulk(
+            PreparedStatement statement,
+            List<Object[]> buffer,
+            Iterator<Object[]> rows,
+            int bucketSize,
+            int rowWidth,
+            QueryExecution execution
+    ) {
         try {
-            final int numberOfRowsAffected = statement.executeUpdate();
-            if(numberOfRowsAffected <= 0) {
-                throw new IllegalStateException("No rows was inserted");
+            int numberOfRows = 0;
+            while(buffer.size() >= bucketSize) {
+                final List<Object[]> bucket = buffer.subList(0, bucketSize);
+                int index = 1;
+                for(Object[] row : bucket) {
+                    requireRowWidth(row, rowWidth);
+                    for(Object arg : row) {
+                        setArg(statement, index++, arg, execution);
+                    }
+                }
+                numberOfRows += statement.executeUpdate();
+                closeOpenedStreams(execution);
+                bucket.clear();
+                fillBuffer(buffer, rows, bucketSize);
             }
-            ResultSet generatedKeys = statement.getGeneratedKeys();
-            if(generatedKeys.next()) {
-                try {
-                    return generatedKeys.getLong(keyColumn);
+            execution.updated(numberOfRows);
+            return numberOfRows;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void requireRowWidth(Object[] row, int rowWidth) {
+        if(row == null) {
+            throw new IllegalArgumentException("Rows cannot contain null");
+        }
+        if(row.length != rowWidth) {
+            throw new IllegalArgumentException("Expected " + rowWidth + " arguments per row, got " + row.length);
+        }
+    }
+
+    private int[] appendUpdateCounts(int[] updateCounts, int offset, int[] chunkUpdateCounts) {
+        int[] result = updateCounts;
+        if(offset + chunkUpdateCounts.length > result.length) {
+            result = Arrays.copyOf(result, Math.max(result.length * 2, offset + chunkUpdateCounts.length));
+        }
+        System.arraycopy(chunkUpdateCounts, 0, result, offset, chunkUpdateCounts.length);
+        return result;
+    }
+
+    private void executeForEach(PreparedStatement preparedStatement, RowCallback rowCallback, QueryExecution execution) {
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            execution.executed();
+            final QueryResult queryResult = new QueryResult(resultSet);
+            int rowCount = 0;
+            while(resultSet.next()) {
+                rowCallback.processRow(queryResult);
+                rowCount++;
+            }
+            execution.mapped(rowCount);
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void closeStreamResources(
+            ResultSet resultSet,
+            PreparedStatement statement,
+            Connection connection,
+            QueryExecution execution,
+            Throwable failure
+    ) {
+        publish(execution, failure);
+        try {
+            try {
+                if(resultSet != null) {
+                    resultSet.close();
                 }
-                catch(SQLException e) {
-                    LOGGER.warn("Unable to find generated key for column '{}'", keyColumn);
-                    throw new MalformedSqlException(e);
+            }
+            finally {
+                if(statement != null) {
+                    statement.close();
                 }
             }
-            throw new IllegalStateException("No ID (key) was generated");
         }
         catch(SQLException e) {
             throw new RuntimeException(e);
         }
+        finally {
+            connectionManager.releaseConnection(connection);
+        }
     }
 
-    private void executeInsert(PreparedStatement statement) {
+    private int executeUpdate(PreparedStatement statement, QueryExecution execution) {
         try {
             final int numberOfRowsAffected = statement.executeUpdate();
+            execution.updated(numberOfRowsAffected);
+            return numberOfRowsAffected;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Long executeInsert(PreparedStatement statement, String keyColumn, QueryExecution execution) {
+        if(keyColumn == null || keyColumn.isEmpty()) {
+            throw new IllegalArgumentException("Key column must be specified");
+        }
+        try {
+            final int numberOfRowsAffected = executeUpdate(statement, execution);
             if(numberOfRowsAffected <= 0) {
                 throw new IllegalStateException("No rows was inserted");
             }
+            try(ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                if(generatedKeys.next()) {
+                    return generatedKeys.getLong(findKeyColumn(generatedKeys, keyColumn));
+                }
+            }
+            throw new IllegalStateException("No ID (key) was generated");
         }
         catch(SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void setArg(PreparedStatement statement, int index, Object arg) {
+    private long[] executeInsertAll(
+            PreparedStatement statement,
+            String keyColumn,
+            Iterable<Object[]> rows,
+            QueryExecution execution
+    ) {
         try {
-            if(arg instanceof Integer) {
-                statement.setInt(index, (Integer)arg);
-            }
-            else if(arg instanceof Boolean) {
-                statement.setBoolean(index, (Boolean)arg);
-            }
-            else if(arg instanceof Long) {
-                statement.setLong(index, (Long)arg);
+            int numberOfRows = 0;
+            for(Object[] row : rows) {
+                if(row == null) {
+                    throw new IllegalArgumentException("Rows cannot contain null");
+                }
+                bindArgs(statement, Arrays.asList(row), execution);
+                statement.addBatch();
+                numberOfRows++;
             }
-            else if(arg instanceof LocalDate) {
-                statement.setDate(index, Date.valueOf((LocalDate)arg));
+            if(numberOfRows == 0) {
+                return new long[0];
             }
-            else if(arg instanceof String) {
-                statement.setString(index, (String)arg);
+            statement.executeBatch();
+            execution.updated(numberOfRows);
+            final long[] keys = new long[numberOfRows];
+            int numberOfKeys = 0;
+            try(ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                int keyColumnIndex = 0;
+                while(generatedKeys.next()) {
+                    if(keyColumnIndex == 0) {
+                        keyColumnIndex = findKeyColumn(generatedKeys, keyColumn);
+                    }
+                    if(numberOfKeys == numberOfRows) {
+                        throw new IllegalStateException("More keys than rows were generated");
+                    }
+                    keys[numberOfKeys++] = generatedKeys.getLong(keyColumnIndex);
+                }
             }
-            else {
-                throw new RuntimeException("Unsupported argument type: " + arg.getClass());
+            if(numberOfKeys != numberOfRows) {
+                throw new IllegalStateException(
+                        numberOfRows + " rows were inserted, but " + numberOfKeys + " keys were generated"
+                );
             }
+            return keys;
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int findKeyColumn(ResultSet generatedKeys, String keyColumn) {
+        try {
+            return generatedKeys.findColumn(keyColumn);
+        }
+        catch(SQLException e) {
+            LOGGER.warn("Unable to find generated key for column '{}'", keyColumn);
+            throw new MalformedSqlException(e);
+        }
+    }
+
+    private void executeInsert(PreparedStatement statement, QueryExecution execution) {
+        final int numberOfRowsAffected = executeUpdate(statement, execution);
+        if(numberOfRowsAffected <= 0) {
+            throw new IllegalStateException("No rows was inserted");
+        }
+    }
+
+    private void setArg(PreparedStatement statement, int index, Object arg, QueryExecution execution) {
+        try {
+            argumentBinders.bind(statement, index, arg, execution.getOpenedStreams());
         }
         catch(SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private interface StatementPreparer {
+        PreparedStatement prepare(Connection connection, String sql) throws SQLException;
+    }
+
+    private interface ExecutionCallback<R> {
+        R run(PreparedStatement statement, QueryExecution execution);
+    }
+
 }
@@ -0,0 +1,140 @@
+package no.obje.jdbcmiddleware.service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Optional configuration of a {@link JdbcService}. Instances are immutable, every {@code with} method returns a copy.
+ */
+public final class JdbcServiceConfig {
+
+    private static final JdbcServiceConfig DEFAULTS = new JdbcServiceConfig(
+            null,
+            ArgumentBinders.defaults(),
+            1000,
+            null,
+            RowLimitSyntax.FETCH_FIRST
+    );
+
+    private final StatementCache statementCache;
+    private final ArgumentBinders argumentBinders;
+    private final int maxStatementParameters;
+    private final Duration queryTimeout;
+    private final RowLimitSyntax rowLimitSyntax;
+
+    private JdbcServiceConfig(
+            StatementCache statementCache,
+            ArgumentBinders argumentBinders,
+            int maxStatementParameters,
+            Duration queryTimeout,
+            RowLimitSyntax rowLimitSyntax
+    ) {
+        if(maxStatementParameters < 1) {
+            throw new IllegalArgumentException("Max statement parameters must be a positive number");
+        }
+        if(queryTimeout != null && (queryTimeout.isZero() || queryTimeout.isNegative())) {
+            throw new IllegalArgumentException("Query timeout must be positive");
+        }
+        this.statementCache = statementCache;
+        this.argumentBinders = Objects.requireNonNull(argumentBinders);
+        this.maxStatementParameters = maxStatementParameters;
+        this.queryTimeout = queryTimeout;
+        this.rowLimitSyntax = Objects.requireNonNull(rowLimitSyntax);
+    }
+
+    public static JdbcServiceConfig defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param statementCache cache used for keeping prepared statements open between executions, or null to close
+     *                       every statement after use
+     */
+    public JdbcServiceConfig withStatementCache(StatementCache statementCache) {
+        return new JdbcServiceConfig(
+                statementCache,
+                argumentBinders,
+                maxStatementParameters,
+                queryTimeout,
+                rowLimitSyntax
+        );
+    }
+
+    /**
+     * @param argumentBinders binders used for setting statement arguments, typically
+     *                        {@link ArgumentBinders#defaults()} with additional binders
+     */
+    public JdbcServiceConfig withArgumentBinders(ArgumentBinders argumentBinders) {
+        return new JdbcServiceConfig(
+                statementCache,
+                argumentBinders,
+                maxStatementParameters,
+                queryTimeout,
+                rowLimitSyntax
+        );
+    }
+
+    /**
+     * @param maxStatementParameters the maximum number of parameters the driver accepts in a single statement, which
+     *                               limits the number of rows a bulk insert sends per statement. Defaults to 1000.
+     */
+    public JdbcServiceConfig withMaxStatementParameters(int maxStatementParameters) {
+        return new JdbcServiceConfig(
+                statementCache,
+                argumentBinders,
+                maxStatementParameters,
+                queryTimeout,
+                rowLimitSyntax
+        );
+    }
+
+    /**
+     * @param queryTimeout how long every statement may run before it is cancelled, or null for no timeout. Statements
+     *                     in a transaction with a timeout are cancelled when the transaction times out, if that is
+     *                     sooner.
+     */
+    public JdbcServiceConfig withQueryTimeout(Duration queryTimeout) {
+        return new JdbcServiceConfig(
+                statementCache,
+                argumentBinders,
+                maxStatementParameters,
+                queryTimeout,
+                rowLimitSyntax
+        );
+    }
+
+    /**
+     * @param rowLimitSyntax the clause used for limiting the rows of every page of a {@link KeysetPager}. Defaults to
+     *                       {@link RowLimitSyntax#FETCH_FIRST}.
+     */
+    public JdbcServiceConfig withRowLimitSyntax(RowLimitSyntax rowLimitSyntax) {
+        return new JdbcServiceConfig(
+                statementCache,
+                argumentBinders,
+                maxStatementParameters,
+                queryTimeout,
+                rowLimitSyntax
+        );
+    }
+
+    public Optional<StatementCache> getStatementCache() {
+        return Optional.ofNullable(statementCache);
+    }
+
+    public ArgumentBinders getArgumentBinders() {
+        return argumentBinders;
+    }
+
+    public int getMaxStatementParameters() {
+        return maxStatementParameters;
+    }
+
+    public Optional<Duration> getQueryTimeout() {
+        return Optional.ofNullable(queryTimeout);
+    }
+
+    public RowLimitSyntax getRowLimitSyntax() {
+        return rowLimitSyntax;
+    }
+}
@@ -0,0 +1,266 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.domain.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the result of a query one page at a time, ordered by its key columns, ascending. Every page after the first
+ * continues after the key of the last row of the previous page, so that deep pages cost the same as the first one, and
+ * no connection is held between pages.
+ * <p>
+ * The query is wrapped in a derived table, which is filtered and ordered by the key columns, and limited to the page
+ * size with the {@link RowLimitSyntax} of the service, so that the database can stop after a page of rows instead of
+ * sorting the whole remaining range. Each call to {@link #pages()} or {@link #stream()} starts over from the first
+ * page.
+ */
+public final class KeysetPager<T> {
+
+    private static final String DERIVED_TABLE_ALIAS = "keyset_page";
+
+    private final JdbcService jdbcService;
+    private final RowMapper<T> rowMapper;
+    private final int pageSize;
+    private final String[] keyColumns;
+    private final List<Object> args;
+    private final List<Object> firstPageArgs;
+    private final String firstPageSql;
+    private final String nextPageSql;
+    private final Executor prefetchExecutor;
+
+    KeysetPager(
+            JdbcService jdbcService,
+            String sql,
+            RowMapper<T> rowMapper,
+            int pageSize,
+            List<String> keyColumns,
+            List<Object> args
+    ) {
+        if(rowMapper == null) {
+            throw new IllegalArgumentException("Row mapper must be specified");
+        }
+        if(pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be a positive number");
+        }
+        this.jdbcService = jdbcService;
+        this.rowMapper = rowMapper;
+        this.pageSize = pageSize;
+        this.keyColumns = validKeyColumns(keyColumns);
+        this.args = args;
+        this.firstPageArgs = new ArrayList<>(args);
+        this.firstPageArgs.add(pageSize);
+        final RowLimitSyntax rowLimitSyntax = jdbcService.getRowLimitSyntax();
+        this.firstPageSql = pageSql(sql, this.keyColumns, false, rowLimitSyntax);
+        this.nextPageSql = pageSql(sql, this.keyColumns, true, rowLimitSyntax);
+        this.prefetchExecutor = null;
+    }
+
+    private KeysetPager(KeysetPager<T> pager, Executor prefetchExecutor) {
+        this.jdbcService = pager.jdbcService;
+        this.rowMapper = pager.rowMapper;
+        this.pageSize = pager.pageSize;
+        this.keyColumns = pager.keyColumns;
+        this.args = pager.args;
+        this.firstPageArgs = pager.firstPageArgs;
+        this.firstPageSql = pager.firstPageSql;
+        this.nextPageSql = pager.nextPageSql;
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    /**
+     * Returns a copy of this pager which fetches the next page on the given executor while the current page is being
+     * processed. Pages are never prefetched while a transaction is in progress, as the transaction is bound to the
+     * calling thread.
+     */
+    public KeysetPager<T> withPrefetch(Executor executor) {
+        return new KeysetPager<>(this, Objects.requireNonNull(executor));
+    }
+
+    /**
+     * @return the pages of the result, each holding at most page size rows, fetched as they are iterated
+     */
+    public Iterator<List<T>> pages() {
+        return new PageIterator();
+    }
+
+    /**
+     * @return the rows of the result, fetched a page at a time as the stream is consumed
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages(), Spliterator.ORDERED), false)
+                .flatMap(List::stream);
+    }
+
+    String getFirstPageSql() {
+        return firstPageSql;
+    }
+
+    String getNextPageSql() {
+        return nextPageSql;
+    }
+
+    private Page<T> fetch(Object[] afterKeys) {
+        final Object[] lastKeys = new Object[keyColumns.length];
+        final int[] keyColumnIndexes = new int[keyColumns.length];
+        final RowMapper<T> keyCapturingRowMapper = queryResult -> {
+            final ResultSet resultSet = queryResult.getResultSet();
+            try {
+                if(keyColumnIndexes[0] == 0) {
+                    for(int i = 0; i < keyColumns.length; i++) {
+                        keyColumnIndexes[i] = resultSet.findColumn(keyColumns[i]);
+                    }
+                }
+                for(int i = 0; i < keyColumns.length; i++) {
+                    lastKeys[i] = resultSet.getObject(keyColumnIndexes[i]);
+                }
+            }
+            catch(SQLException e) {
+                throw new RuntimeException(e);
+            }
+            return rowMapper.mapRow(queryResult);
+        };
+        final List<T> rows = afterKeys == null
+                ? jdbcService.queryForList(firstPageSql, pageSize, keyCapturingRowMapper, firstPageArgs)
+                : jdbcService.queryForList(nextPageSql, pageSize, keyCapturingRowMapper, nextPageArgs(afterKeys));
+        return new Page<>(rows, lastKeys);
+    }
+
+    /**
+     * The key comparison is expanded as {@code (a > ?) OR (a = ? AND b > ?)}, as row value comparisons are not
+     * supported by every database. The page size follows the keys, as the parameter of the row limit.
+     */
+    private List<Object> nextPageArgs(Object[] afterKeys) {
+        final List<Object> pageArgs = new ArrayList<>(
+                args.size() + keyColumns.length * (keyColumns.length + 1) / 2 + 1
+        );
+        pageArgs.addAll(args);
+        for(int i = 0; i < keyColumns.length; i++) {
+            for(int j = 0; j <= i; j++) {
+                pageArgs.add(afterKeys[j]);
+            }
+        }
+        pageArgs.add(pageSize);
+        return pageArgs;
+    }
+
+    private static String pageSql(String sql, String[] keyColumns, boolean afterKeys, RowLimitSyntax rowLimitSyntax) {
+        final StringBuilder builder = new StringBuilder("SELECT * FROM (")
+                .append(sql)
+                .append(") ")
+                .append(DERIVED_TABLE_ALIAS);
+        if(afterKeys) {
+            builder.append(" WHERE ");
+            for(int i = 0; i < keyColumns.length; i++) {
+                if(i > 0) {
+                    builder.append(" OR ");
+                }
+                builder.append('(');
+                for(int j = 0; j < i; j++) {
+                    builder.append(keyColumns[j]).append(" = ? AND ");
+                }
+                builder.append(keyColumns[i]).append(" > ?)");
+            }
+        }
+        builder.append(" ORDER BY ");
+        for(int i = 0; i < keyColumns.length; i++) {
+            if(i > 0) {
+                builder.append(", ");
+            }
+            builder.append(keyColumns[i]);
+        }
+        return builder.append(rowLimitSyntax.getClause()).toString();
+    }
+
+    private static String[] validKeyColumns(List<String> keyColumns) {
+        if(keyColumns == null || keyColumns.isEmpty()) {
+            throw new IllegalArgumentException("At least one key column must be specified");
+        }
+        for(String keyColumn : keyColumns) {
+            if(keyColumn == null || keyColumn.isEmpty()) {
+                throw new IllegalArgumentException("Key columns cannot be blank or null");
+            }
+        }
+        return keyColumns.toArray(new String[0]);
+    }
+
+    private static final class Page<T> {
+
+        private final List<T> rows;
+        private final Object[] lastKeys;
+
+        private Page(List<T> rows, Object[] lastKeys) {
+            this.rows = rows;
+            this.lastKeys = lastKeys;
+        }
+    }
+
+    private final class PageIterator implements Iterator<List<T>> {
+
+        private Object[] lastKeys;
+        private List<T> nextPage;
+        private CompletableFuture<Page<T>> prefetchedPage;
+        private boolean lastPageFetched;
+
+        @Override
+        public boolean hasNext() {
+            if(nextPage != null) {
+                return true;
+            }
+            if(lastPageFetched) {
+                return false;
+            }
+            final Page<T> page = prefetchedPage != null ? join(prefetchedPage) : fetch(lastKeys);
+            prefetchedPage = null;
+            if(page.rows.isEmpty()) {
+                lastPageFetched = true;
+                return false;
+            }
+            nextPage = Collections.unmodifiableList(page.rows);
+            lastKeys = page.lastKeys;
+            if(page.rows.size() < pageSize) {
+                lastPageFetched = true;
+            }
+            else if(prefetchExecutor != null && !jdbcService.getConnectionManager().isTransactionInProgress()) {
+                final Object[] afterKeys = lastKeys;
+                prefetchedPage = CompletableFuture.supplyAsync(() -> fetch(afterKeys), prefetchExecutor);
+            }
+            return true;
+        }
+
+        @Override
+        public List<T> next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final List<T> page = nextPage;
+            nextPage = null;
+            return page;
+        }
+
+        private Page<T> join(CompletableFuture<Page<T>> page) {
+            try {
+                return page.join();
+            }
+            catch(CompletionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package no.obje.jdbcmiddleware.service;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Streams a file bound as a statement argument. The file is opened when the driver first reads from the stream, and
+ * closed as soon as the driver has read all of it, since the driver neither closes the streams it is given nor tells
+ * when it is done with them. Drivers which stop reading early, or statements which fail, leave the stream to be closed
+ * by {@link JdbcService} once the statement has run.
+ */
+final class PathInputStream extends InputStream {
+
+    private final Path path;
+    private final long size;
+    private InputStream in;
+    private long position;
+    private boolean closed;
+
+    PathInputStream(Path path, long size) {
+        this.path = path;
+        this.size = size;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final InputStream openIn = open();
+        if(openIn == null) {
+            return -1;
+        }
+        final int value = openIn.read();
+        advance(value == -1 ? -1 : 1);
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        final InputStream openIn = open();
+        if(openIn == null) {
+            return -1;
+        }
+        final int read = openIn.read(buffer, offset, length);
+        advance(read);
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        final InputStream openIn = open();
+        return openIn == null ? 0 : openIn.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if(in != null) {
+            in.close();
+        }
+    }
+
+    private InputStream open() throws IOException {
+        if(closed) {
+            return null;
+        }
+        if(in == null) {
+            in = new FileInputStream(path.toFile());
+        }
+        return in;
+    }
+
+    private void advance(int read) throws IOException {
+        if(read == -1) {
+            close();
+            return;
+        }
+        position += read;
+        if(position >= size) {
+            close();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package no.obje.jdbcmiddleware.service;
+
+/**
+ * Decides how a unit of work run by the {@link TransactionManager} relates to a transaction already in progress.
+ * Without a transaction in progress, every propagation starts a new transaction.
+ */
+public enum Propagation {
+
+    /**
+     * Joins the transaction in progress, so that a failure rolls back the whole transaction.
+     */
+    REQUIRED,
+
+    /**
+     * Sets a savepoint in the transaction in progress, so that a failure only rolls back the work done since the
+     * savepoint, and the outer unit of work may carry on.
+     */
+    NESTED
+}
@@ -0,0 +1,75 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.metrics.QueryEvent;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the phases of a single statement while it runs. The prepare phase lasts until {@link #prepared()}, the execute
+ * phase until {@link #executed()} or {@link #updated(int)}, and the map phase until {@link #mapped(int)}. Statements
+ * which read no rows have no map phase. The streams opened to bind the arguments of the statement are collected, so
+ * that they can be closed once it has run.
+ */
+final class QueryExecution {
+
+    private final String sql;
+    private final List<Object> args;
+    private final long startNanos;
+    private final List<Closeable> openedStreams = new ArrayList<>();
+    private long preparedNanos;
+    private long executedNanos;
+    private long mappedNanos;
+    private boolean isPrepared;
+    private boolean isExecuted;
+    private boolean isMapped;
+    private int rowCount;
+
+    QueryExecution(String sql, List<Object> args) {
+        this.sql = sql;
+        this.args = args;
+        this.startNanos = System.nanoTime();
+    }
+
+    void prepared() {
+        preparedNanos = System.nanoTime();
+        isPrepared = true;
+    }
+
+    void executed() {
+        executedNanos = System.nanoTime();
+        isExecuted = true;
+    }
+
+    void updated(int rowCount) {
+        executed();
+        this.rowCount = rowCount;
+    }
+
+    void mapped(int rowCount) {
+        mappedNanos = System.nanoTime();
+        isMapped = true;
+        this.rowCount = rowCount;
+    }
+
+    List<Closeable> getOpenedStreams() {
+        return openedStreams;
+    }
+
+    QueryEvent finish(Throwable failure) {
+        final long endNanos = System.nanoTime();
+        final long prepareEnd = isPrepared ? preparedNanos : endNanos;
+        final long executeEnd = isExecuted ? executedNanos : endNanos;
+        final long mapEnd = isMapped ? mappedNanos : failure != null ? endNanos : executeEnd;
+        return new QueryEvent(
+                sql,
+                args,
+                prepareEnd - startNanos,
+                executeEnd - prepareEnd,
+                mapEnd - executeEnd,
+                rowCount,
+                failure
+        );
+    }
+}
@@ -0,0 +1,188 @@
+package no.obje.jdbcmiddleware.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Options of the statement and result set of a single query. Instances are immutable, every {@code with} method
+ * returns a copy.
+ */
+public final class QueryOptions {
+
+    private static final int DEFAULT_HOLDABILITY = 0;
+
+    private static final QueryOptions DEFAULTS = new QueryOptions(
+            0,
+            0,
+            ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY,
+            ResultSet.FETCH_FORWARD,
+            DEFAULT_HOLDABILITY
+    );
+
+    private final int fetchSize;
+    private final int maxRows;
+    private final int resultSetType;
+    private final int resultSetConcurrency;
+    private final int fetchDirection;
+    private final int holdability;
+
+    private QueryOptions(
+            int fetchSize,
+            int maxRows,
+            int resultSetType,
+            int resultSetConcurrency,
+            int fetchDirection,
+            int holdability
+    ) {
+        if(fetchSize < 0) {
+            throw new IllegalArgumentException("Fetch size cannot be negative");
+        }
+        if(maxRows < 0) {
+            throw new IllegalArgumentException("Max rows cannot be negative");
+        }
+        if(resultSetType != ResultSet.TYPE_FORWARD_ONLY
+                && resultSetType != ResultSet.TYPE_SCROLL_INSENSITIVE
+                && resultSetType != ResultSet.TYPE_SCROLL_SENSITIVE) {
+            throw new IllegalArgumentException("Unknown result set type " + resultSetType);
+        }
+        if(resultSetConcurrency != ResultSet.CONCUR_READ_ONLY && resultSetConcurrency != ResultSet.CONCUR_UPDATABLE) {
+            throw new IllegalArgumentException("Unknown result set concurrency " + resultSetConcurrency);
+        }
+        if(fetchDirection != ResultSet.FETCH_FORWARD
+                && fetchDirection != ResultSet.FETCH_REVERSE
+                && fetchDirection != ResultSet.FETCH_UNKNOWN) {
+            throw new IllegalArgumentException("Unknown fetch direction " + fetchDirection);
+        }
+        if(holdability != DEFAULT_HOLDABILITY
+                && holdability != ResultSet.HOLD_CURSORS_OVER_COMMIT
+                && holdability != ResultSet.CLOSE_CURSORS_AT_COMMIT) {
+            throw new IllegalArgumentException("Unknown holdability " + holdability);
+        }
+        this.fetchSize = fetchSize;
+        this.maxRows = maxRows;
+        this.resultSetType = resultSetType;
+        this.resultSetConcurrency = resultSetConcurrency;
+        this.fetchDirection = fetchDirection;
+        this.holdability = holdability;
+    }
+
+    /**
+     * A forward-only, read-only result set, with the fetch size, max rows and holdability left to the driver.
+     */
+    public static QueryOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param fetchSize the number of rows the driver should fetch from the database at a time, or 0 to leave it to
+     *                  the driver. Many drivers fetch the whole result by default.
+     */
+    public QueryOptions withFetchSize(int fetchSize) {
+        return new QueryOptions(fetchSize, maxRows, resultSetType, resultSetConcurrency, fetchDirection, holdability);
+    }
+
+    /**
+     * @param maxRows the maximum number of rows read, with any further rows silently dropped, or 0 for no limit
+     */
+    public QueryOptions withMaxRows(int maxRows) {
+        return new QueryOptions(fetchSize, maxRows, resultSetType, resultSetConcurrency, fetchDirection, holdability);
+    }
+
+    /**
+     * @param resultSetType one of {@link ResultSet#TYPE_FORWARD_ONLY}, {@link ResultSet#TYPE_SCROLL_INSENSITIVE} or
+     *                      {@link ResultSet#TYPE_SCROLL_SENSITIVE}
+     */
+    public QueryOptions withResultSetType(int resultSetType) {
+        return new QueryOptions(fetchSize, maxRows, resultSetType, resultSetConcurrency, fetchDirection, holdability);
+    }
+
+    /**
+     * @param resultSetConcurrency either {@link ResultSet#CONCUR_READ_ONLY} or {@link ResultSet#CONCUR_UPDATABLE}
+     */
+    public QueryOptions withResultSetConcurrency(int resultSetConcurrency) {
+        return new QueryOptions(fetchSize, maxRows, resultSetType, resultSetConcurrency, fetchDirection, holdability);
+    }
+
+    /**
+     * @param fetchDirection one of {@link ResultSet#FETCH_FORWARD}, {@link ResultSet#FETCH_REVERSE} or
+     *                       {@link ResultSet#FETCH_UNKNOWN}, a hint of the order the rows will be read in
+     */
+    public QueryOptions withFetchDirection(int fetchDirection) {
+        return new QueryOptions(fetchSize, maxRows, resultSetType, resultSetConcurrency, fetchDirection, holdability);
+    }
+
+    /**
+     * @param holdability either {@link ResultSet#HOLD_CURSORS_OVER_COMMIT} or {@link ResultSet#CLOSE_CURSORS_AT_COMMIT}
+     */
+    public QueryOptions withHoldability(int holdability) {
+        return new QueryOptions(fetchSize, maxRows, resultSetType, resultSetConcurrency, fetchDirection, holdability);
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public int getResultSetType() {
+        return resultSetType;
+    }
+
+    public int getResultSetConcurrency() {
+        return resultSetConcurrency;
+    }
+
+    public int getFetchDirection() {
+        return fetchDirection;
+    }
+
+    /**
+     * @return the holdability of the result set, or 0 if it is left to the driver
+     */
+    public int getHoldability() {
+        return holdability;
+    }
+
+    /**
+     * @return whether a statement prepared with these options is the same as one prepared without options, and can
+     *         therefore be taken from the statement cache
+     */
+    boolean isDefault() {
+        return fetchSize == 0
+                && maxRows == 0
+                && resultSetType == ResultSet.TYPE_FORWARD_ONLY
+                && resultSetConcurrency == ResultSet.CONCUR_READ_ONLY
+                && fetchDirection == ResultSet.FETCH_FORWARD
+                && holdability == DEFAULT_HOLDABILITY;
+    }
+
+    /**
+     * Prepares the given query with these options applied, before it is executed.
+     */
+    PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        final PreparedStatement statement = holdability == DEFAULT_HOLDABILITY
+                ? connection.prepareStatement(sql, resultSetType, resultSetConcurrency)
+                : connection.prepareStatement(sql, resultSetType, resultSetConcurrency, holdability);
+        try {
+            if(fetchSize > 0) {
+                statement.setFetchSize(fetchSize);
+            }
+            if(maxRows > 0) {
+                statement.setMaxRows(maxRows);
+            }
+            if(fetchDirection != ResultSet.FETCH_FORWARD) {
+                statement.setFetchDirection(fetchDirection);
+            }
+        }
+        catch(SQLException e) {
+            statement.close();
+            throw e;
+        }
+        return statement;
+    }
+}
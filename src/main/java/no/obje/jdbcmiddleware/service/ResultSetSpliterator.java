@@ -0,0 +1,47 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.domain.QueryResult;
+import no.obje.jdbcmiddleware.domain.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Reads one row from the underlying result set per advance. Closing the result set is left to the owner.
+ */
+class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+    private final ResultSet resultSet;
+    private final QueryResult queryResult;
+    private final RowMapper<T> rowMapper;
+    private int rowCount;
+
+    ResultSetSpliterator(ResultSet resultSet, RowMapper<T> rowMapper) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.resultSet = resultSet;
+        this.queryResult = new QueryResult(resultSet);
+        this.rowMapper = rowMapper;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        try {
+            if(!resultSet.next()) {
+                return false;
+            }
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+        rowCount++;
+        action.accept(rowMapper.mapRow(queryResult));
+        return true;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+}
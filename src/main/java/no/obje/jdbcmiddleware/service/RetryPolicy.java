@@ -0,0 +1,148 @@
+package no.obje.jdbcmiddleware.service;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed transaction is run again, and how long to wait before doing so. A transaction is retried
+ * when it failed on a serialization failure or a deadlock, which the database resolves by rolling back one of the
+ * transactions involved, and which usually succeed when run again. Instances are immutable, every {@code with} method
+ * returns a copy.
+ */
+public final class RetryPolicy {
+
+    private static final RetryPolicy NONE =
+            new RetryPolicy(1, Duration.ofMillis(10), Duration.ofSeconds(1), new int[0]);
+    private static final RetryPolicy DEFAULTS =
+            new RetryPolicy(3, Duration.ofMillis(10), Duration.ofSeconds(1), new int[0]);
+
+    private static final String SERIALIZATION_FAILURE = "40001";
+    private static final String DEADLOCK_DETECTED = "40P01";
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final int[] transientErrorCodes;
+
+    private RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff, int[] transientErrorCodes) {
+        if(maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be a positive number");
+        }
+        if(initialBackoff == null || initialBackoff.isNegative()) {
+            throw new IllegalArgumentException("Initial backoff cannot be negative");
+        }
+        if(maxBackoff == null || maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("Max backoff must be at least initial backoff");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.transientErrorCodes = transientErrorCodes;
+    }
+
+    /**
+     * Never retries.
+     */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * Runs a transaction at most 3 times, backing off 10 milliseconds after the first attempt, doubling every attempt up
+     * to 1 second.
+     */
+    public static RetryPolicy defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param maxAttempts the number of times a transaction is run at most, including the first attempt
+     */
+    public RetryPolicy withMaxAttempts(int maxAttempts) {
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, transientErrorCodes);
+    }
+
+    /**
+     * @param initialBackoff the upper bound of the wait after the first attempt, doubled for every following attempt
+     */
+    public RetryPolicy withInitialBackoff(Duration initialBackoff) {
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, transientErrorCodes);
+    }
+
+    /**
+     * @param maxBackoff the upper bound of any wait
+     */
+    public RetryPolicy withMaxBackoff(Duration maxBackoff) {
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, transientErrorCodes);
+    }
+
+    /**
+     * Vendor error codes are only meaningful to the driver which reports them, and are therefore never retried unless
+     * given here. Examples are 1213 (deadlock) and 1205 (lock wait timeout) of MySQL, and 60 (deadlock) and 8177
+     * (unable to serialize) of Oracle.
+     *
+     * @param transientErrorCodes error codes of the driver in use which are retried, whatever their SQLState
+     */
+    public RetryPolicy withTransientErrorCodes(int... transientErrorCodes) {
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, transientErrorCodes.clone());
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * A failure is transient when it has the SQLState 40001 (serialization failure) or 40P01 (deadlock detected), or
+     * one of the transient error codes of this policy, or is a {@link SQLTransactionRollbackException} without a
+     * SQLState. The other states of the transaction rollback class are not retried, in particular 40003, after which
+     * it is unknown whether the transaction committed.
+     *
+     * @return whether the given failure, or any of its causes, is a serialization failure or a deadlock
+     */
+    public boolean isTransient(Throwable throwable) {
+        for(Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if(cause instanceof SQLException && isTransient((SQLException)cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Picks a random wait between zero and the backoff of the given attempt, so that transactions which failed together
+     * do not collide again when retried.
+     *
+     * @param attempt the attempt which failed, starting at 1
+     * @return the time to wait, in nanoseconds
+     */
+    long backoffNanos(int attempt) {
+        final long maxNanos = maxBackoff.toNanos();
+        final long initialNanos = initialBackoff.toNanos();
+        final int doublings = Math.min(attempt - 1, 62);
+        final long backoffNanos = initialNanos > (maxNanos >> doublings) ? maxNanos : initialNanos << doublings;
+        return backoffNanos == 0 ? 0 : ThreadLocalRandom.current().nextLong(backoffNanos + 1);
+    }
+
+    private boolean isTransient(SQLException e) {
+        for(int transientErrorCode : transientErrorCodes) {
+            if(e.getErrorCode() == transientErrorCode) {
+                return true;
+            }
+        }
+        final String sqlState = e.getSQLState();
+        if(sqlState == null) {
+            return e instanceof SQLTransactionRollbackException;
+        }
+        return sqlState.equals(SERIALIZATION_FAILURE) || sqlState.equals(DEADLOCK_DETECTED);
+    }
+}
@@ -0,0 +1,55 @@
+package no.obje.jdbcmiddleware.service;
+
+import java.time.Duration;
+
+/**
+ * Configuration of a {@link RoutingConnectionManager}. Instances are immutable, every {@code with} method returns a
+ * copy.
+ */
+public final class RoutingConfig {
+
+    private static final RoutingConfig DEFAULTS = new RoutingConfig(3, Duration.ofSeconds(30));
+
+    private final int maxFailures;
+    private final Duration ejectionTime;
+
+    private RoutingConfig(int maxFailures, Duration ejectionTime) {
+        if(maxFailures < 1) {
+            throw new IllegalArgumentException("Max failures must be a positive number");
+        }
+        if(ejectionTime == null || ejectionTime.isNegative() || ejectionTime.isZero()) {
+            throw new IllegalArgumentException("Ejection time must be positive");
+        }
+        this.maxFailures = maxFailures;
+        this.ejectionTime = ejectionTime;
+    }
+
+    /**
+     * Ejects a replica for 30 seconds after 3 failures in a row.
+     */
+    public static RoutingConfig defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param maxFailures the number of failures in a row after which a replica is ejected
+     */
+    public RoutingConfig withMaxFailures(int maxFailures) {
+        return new RoutingConfig(maxFailures, ejectionTime);
+    }
+
+    /**
+     * @param ejectionTime how long an ejected replica is left out before reads are sent to it again
+     */
+    public RoutingConfig withEjectionTime(Duration ejectionTime) {
+        return new RoutingConfig(maxFailures, ejectionTime);
+    }
+
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    public Duration getEjectionTime() {
+        return ejectionTime;
+    }
+}
@@ -0,0 +1,278 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.metrics.QueryListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection manager which sends reads to replicas of the primary database. Queries run by a {@link JdbcService}
+ * outside of a transaction, and read-only transactions, get their connection from the replica with the fewest
+ * connections in use. Everything else, including every statement of a read-write transaction, runs on the primary.
+ * <p>
+ * Replicas lag behind the primary, so a query outside of a transaction may not see a write which has just been made.
+ * Reads which must see the latest writes should be run in a read-write transaction.
+ * <p>
+ * A replica which fails to hand out a connection, or whose connection fails, a number of times in a row is ejected for
+ * a while, and reads fall back to the other replicas, or to the primary when every replica is ejected.
+ */
+public class RoutingConnectionManager extends ConnectionManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutingConnectionManager.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final RoutingConfig config;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public RoutingConnectionManager(DataSource primary, List<DataSource> replicas) {
+        this(primary, replicas, QueryListener.NONE, RoutingConfig.defaults());
+    }
+
+    /**
+     * @param primary the data source of the primary database, taking every write
+     * @param replicas the data sources of the read replicas
+     * @param queryListener notified of connection acquisition, and of every statement run by a {@link JdbcService}
+     *                      using this connection manager
+     * @param config when to eject replicas
+     */
+    public RoutingConnectionManager(
+            DataSource primary,
+            List<DataSource> replicas,
+            QueryListener queryListener,
+            RoutingConfig config
+    ) {
+        super(primary, queryListener);
+        this.primary = primary;
+        this.config = Objects.requireNonNull(config);
+        final List<Replica> newReplicas = new ArrayList<>();
+        for(DataSource replica : Objects.requireNonNull(replicas)) {
+            newReplicas.add(new Replica(Objects.requireNonNull(replica)));
+        }
+        this.replicas = Collections.unmodifiableList(newReplicas);
+    }
+
+    /**
+     * @return the number of replicas which are not currently ejected
+     */
+    public int getAvailableReplicaCount() {
+        final long now = System.nanoTime();
+        int available = 0;
+        for(Replica replica : replicas) {
+            if(replica.isAvailable(now)) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    @Override
+    Connection openConnection(boolean readOnly) throws SQLException {
+        if(!readOnly || replicas.isEmpty()) {
+            return primary.getConnection();
+        }
+        final boolean[] tried = new boolean[replicas.size()];
+        Replica replica;
+        while((replica = selectReplica(tried)) != null) {
+            try {
+                return replica.getConnection();
+            }
+            catch(SQLException | RuntimeException e) {
+                LOGGER.warn("Unable to get connection from replica, trying another data source", e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Picks the available replica with the fewest connections in use out of the ones not tried yet, rotating the
+     * starting point so that ties are spread evenly.
+     */
+    private Replica selectReplica(boolean[] tried) {
+        final long now = System.nanoTime();
+        final int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        int selected = -1;
+        for(int i = 0; i < replicas.size(); i++) {
+            final int index = (start + i) % replicas.size();
+            final Replica replica = replicas.get(index);
+            if(!tried[index]
+                    && replica.isAvailable(now)
+                    && (selected < 0 || replica.inFlight.get() < replicas.get(selected).inFlight.get())) {
+                selected = index;
+            }
+        }
+        if(selected < 0) {
+            return null;
+        }
+        tried[selected] = true;
+        return replicas.get(selected);
+    }
+
+    private final class Replica {
+
+        private final DataSource dataSource;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long ejectedUntilNanos;
+        private volatile boolean ejected;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private boolean isAvailable(long now) {
+            return !ejected || now - ejectedUntilNanos >= 0;
+        }
+
+        private Connection getConnection() throws SQLException {
+            final Connection connection;
+            try {
+                connection = dataSource.getConnection();
+            }
+            catch(SQLException | RuntimeException e) {
+                failed();
+                throw e;
+            }
+            inFlight.incrementAndGet();
+            return (Connection)Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class},
+                    new ReplicaConnectionHandler(this, connection)
+            );
+        }
+
+        /**
+         * Called when a connection which never failed is closed, clearing the failures counted so far.
+         */
+        private void succeeded() {
+            failures.set(0);
+            ejected = false;
+        }
+
+        private void failed() {
+            if(failures.incrementAndGet() >= config.getMaxFailures()) {
+                ejectedUntilNanos = System.nanoTime() + config.getEjectionTime().toNanos();
+                ejected = true;
+                failures.set(0);
+                LOGGER.warn("Ejecting replica {} for {}", dataSource, config.getEjectionTime());
+            }
+        }
+    }
+
+    /**
+     * Backs the connection proxy of a replica connection, counting the connection as in use until it is closed. A
+     * connection failure on the connection, or on a statement created through it, counts once against the replica,
+     * and a connection closed without any failure clears the failures of the replica. Statements prepared through a
+     * {@link StatementCache} are prepared on the physical connection, so their failures are not counted.
+     */
+    private static final class ReplicaConnectionHandler implements InvocationHandler {
+
+        private final Replica replica;
+        private final Connection connection;
+        private boolean closed;
+        private volatile boolean failed;
+
+        private ReplicaConnectionHandler(Replica replica, Connection connection) {
+            this.replica = replica;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch(method.getName()) {
+                case "close":
+                    if(!closed) {
+                        closed = true;
+                        replica.inFlight.decrementAndGet();
+                        if(!failed) {
+                            replica.succeeded();
+                        }
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ReplicaConnection[" + connection + "]";
+                case "unwrap":
+                    return ((Class<?>)args[0]).isInstance(connection) && !connection.isWrapperFor((Class<?>)args[0])
+                            ? connection
+                            : connection.unwrap((Class<?>)args[0]);
+                case "isWrapperFor":
+                    return ((Class<?>)args[0]).isInstance(connection) || connection.isWrapperFor((Class<?>)args[0]);
+                default:
+                    break;
+            }
+            final Object result = invokeOn(connection, method, args);
+            if(result instanceof Statement && method.getReturnType().isInterface()) {
+                return Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(),
+                        new Class<?>[] {method.getReturnType()},
+                        new ReplicaStatementHandler(this, (Statement)result)
+                );
+            }
+            return result;
+        }
+
+        private Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            }
+            catch(InvocationTargetException e) {
+                final Throwable cause = e.getCause();
+                if(cause instanceof SQLException && isConnectionFailure((SQLException)cause) && !failed) {
+                    failed = true;
+                    replica.failed();
+                }
+                throw cause;
+            }
+        }
+
+        private static boolean isConnectionFailure(SQLException e) {
+            return e.getSQLState() != null && e.getSQLState().startsWith("08");
+        }
+    }
+
+    /**
+     * Backs the proxy of a statement created through a replica connection proxy, counting its connection failures
+     * against the replica.
+     */
+    private static final class ReplicaStatementHandler implements InvocationHandler {
+
+        private final ReplicaConnectionHandler connectionHandler;
+        private final Statement statement;
+
+        private ReplicaStatementHandler(ReplicaConnectionHandler connectionHandler, Statement statement) {
+            this.connectionHandler = connectionHandler;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch(method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ReplicaStatement[" + statement + "]";
+                default:
+                    return connectionHandler.invokeOn(statement, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package no.obje.jdbcmiddleware.service;
+
+/**
+ * The clause limiting the number of rows a query returns, appended after its ORDER BY. The limit is always bound as a
+ * parameter, so that it is part of the statement the database plans, unlike {@link java.sql.Statement#setMaxRows(int)}
+ * which many drivers only apply while reading the result.
+ */
+public enum RowLimitSyntax {
+
+    /**
+     * The SQL standard clause, supported by PostgreSQL, Oracle 12c and later, DB2, H2, HSQLDB and Derby.
+     */
+    FETCH_FIRST(" FETCH FIRST ? ROWS ONLY"),
+
+    /**
+     * The standard clause with an explicit offset, required by SQL Server.
+     */
+    OFFSET_FETCH(" OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY"),
+
+    /**
+     * Supported by MySQL, MariaDB, SQLite, PostgreSQL, H2 and HSQLDB.
+     */
+    LIMIT(" LIMIT ?");
+
+    private final String clause;
+
+    RowLimitSyntax(String clause) {
+        this.clause = clause;
+    }
+
+    /**
+     * @return the clause with a leading space, and a single parameter for the number of rows
+     */
+    String getClause() {
+        return clause;
+    }
+}
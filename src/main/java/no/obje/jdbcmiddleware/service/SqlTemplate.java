@@ -0,0 +1,261 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.domain.ParameterSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A statement split at its parameters, either named, such as {@code :name}, or positional. Instances are immutable,
+ * and are cached by the {@link JdbcService} per SQL string.
+ * <p>
+ * Parameters are not recognized inside quoted literals and identifiers or comments, nor in type casts such as
+ * {@code ::text}.
+ */
+final class SqlTemplate {
+
+    private final String sql;
+    private final String[] fragments;
+    private final String[] parameterNames;
+
+    private SqlTemplate(String sql, List<String> fragments, List<String> parameterNames) {
+        this.sql = sql;
+        this.fragments = fragments.toArray(new String[0]);
+        this.parameterNames = parameterNames.toArray(new String[0]);
+    }
+
+    /**
+     * Parses a statement with named parameters, which are replaced by positional ones.
+     */
+    static SqlTemplate parseNamed(String sql) {
+        return parse(sql, true);
+    }
+
+    static SqlTemplate parsePositional(String sql) {
+        return parse(sql, false);
+    }
+
+    /**
+     * @return the statement with a single positional parameter in place of every parameter
+     */
+    String getSql() {
+        return sql;
+    }
+
+    List<String> getParameterNames() {
+        return Collections.unmodifiableList(Arrays.asList(parameterNames));
+    }
+
+    /**
+     * @return the value of every named parameter, in positional order
+     */
+    Object[] values(ParameterSource parameters) {
+        final Object[] values = new Object[parameterNames.length];
+        for(int i = 0; i < parameterNames.length; i++) {
+            if(!parameters.hasValue(parameterNames[i])) {
+                throw new IllegalArgumentException("No value given for parameter '" + parameterNames[i] + "'");
+            }
+            values[i] = parameters.getValue(parameterNames[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Expands every collection argument into a list of positional parameters, sized to the next power of two and
+     * padded by repeating the last element, so that the number of distinct statements stays small. If the parameters
+     * would exceed the given maximum, the statement is split into several, each given a chunk of the collection. Only
+     * statements with a single collection argument can be split.
+     *
+     * @param args the arguments of the statement, with a collection in place of every list of parameters
+     * @param maxParameters the maximum number of parameters per statement
+     * @param binders the binders of the arguments, leaving collections with a registered binder to be bound as is
+     * @return the statements to execute, in order
+     */
+    List<Expansion> expand(Object[] args, int maxParameters, ArgumentBinders binders) {
+        if(args.length != parameterNames.length) {
+            throw new IllegalArgumentException("Expected " + parameterNames.length + " arguments, got " + args.length);
+        }
+        int numberOfParameters = 0;
+        int numberOfCollections = 0;
+        int collectionIndex = -1;
+        for(int i = 0; i < args.length; i++) {
+            if(binders.isExpanded(args[i])) {
+                final int size = ((Collection<?>)args[i]).size();
+                if(size == 0) {
+                    throw new IllegalArgumentException("Collection argument " + (i + 1) + " cannot be empty");
+                }
+                numberOfParameters += bucketSize(size);
+                numberOfCollections++;
+                collectionIndex = i;
+            }
+            else {
+                numberOfParameters++;
+            }
+        }
+        if(numberOfParameters <= maxParameters) {
+            return Collections.singletonList(expansion(args, binders));
+        }
+        final int remainingParameters = maxParameters - (args.length - 1);
+        if(numberOfCollections > 1 || remainingParameters < 1) {
+            throw new IllegalArgumentException(
+                    "Collection arguments cannot be split to fit within " + maxParameters + " parameters"
+            );
+        }
+        final List<?> collection = new ArrayList<>((Collection<?>)args[collectionIndex]);
+        final int chunkSize = Integer.highestOneBit(remainingParameters);
+        final List<Expansion> expansions = new ArrayList<>((collection.size() + chunkSize - 1) / chunkSize);
+        for(int start = 0; start < collection.size(); start += chunkSize) {
+            final Object[] chunkArgs = args.clone();
+            chunkArgs[collectionIndex] = collection.subList(start, Math.min(start + chunkSize, collection.size()));
+            expansions.add(expansion(chunkArgs, binders));
+        }
+        return expansions;
+    }
+
+    static boolean hasCollection(Object[] args, ArgumentBinders binders) {
+        for(Object arg : args) {
+            if(binders.isExpanded(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int bucketSize(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private Expansion expansion(Object[] args, ArgumentBinders binders) {
+        final StringBuilder builder = new StringBuilder(sql.length() + args.length * 2);
+        final List<Object> expandedArgs = new ArrayList<>(args.length);
+        for(int i = 0; i < args.length; i++) {
+            builder.append(fragments[i]);
+            if(binders.isExpanded(args[i])) {
+                final Collection<?> collection = (Collection<?>)args[i];
+                final int bucketSize = bucketSize(collection.size());
+                Object last = null;
+                for(Object element : collection) {
+                    expandedArgs.add(element);
+                    last = element;
+                }
+                for(int j = collection.size(); j < bucketSize; j++) {
+                    expandedArgs.add(last);
+                }
+                for(int j = 0; j < bucketSize; j++) {
+                    builder.append(j == 0 ? "?" : ", ?");
+                }
+            }
+            else {
+                expandedArgs.add(args[i]);
+                builder.append('?');
+            }
+        }
+        builder.append(fragments[args.length]);
+        return new Expansion(builder.toString(), expandedArgs.toArray());
+    }
+
+    private static SqlTemplate parse(String sql, boolean named) {
+        final List<String> fragments = new ArrayList<>();
+        final List<String> parameterNames = new ArrayList<>();
+        final StringBuilder positionalSql = new StringBuilder(sql.length());
+        int fragmentStart = 0;
+        int i = 0;
+        while(i < sql.length()) {
+            final char c = sql.charAt(i);
+            final int skipped = skipLiteralOrComment(sql, i);
+            if(skipped > i) {
+                i = skipped;
+            }
+            else if(c == ':' && sql.startsWith("::", i)) {
+                i += 2;
+            }
+            else if(named && c == ':' && i + 1 < sql.length() && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 2;
+                while(end < sql.length() && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                final String fragment = sql.substring(fragmentStart, i);
+                fragments.add(fragment);
+                positionalSql.append(fragment).append('?');
+                parameterNames.add(sql.substring(i + 1, end));
+                fragmentStart = end;
+                i = end;
+            }
+            else if(!named && c == '?') {
+                fragments.add(sql.substring(fragmentStart, i));
+                parameterNames.add(String.valueOf(parameterNames.size() + 1));
+                fragmentStart = ++i;
+            }
+            else {
+                i++;
+            }
+        }
+        final String lastFragment = sql.substring(fragmentStart);
+        fragments.add(lastFragment);
+        positionalSql.append(lastFragment);
+        return new SqlTemplate(named ? positionalSql.toString() : sql, fragments, parameterNames);
+    }
+
+    /**
+     * @return the index following the quoted literal, quoted identifier or comment starting at the given index, or the
+     *         given index if none starts there
+     */
+    static int skipLiteralOrComment(String sql, int start) {
+        final char c = sql.charAt(start);
+        if(c == '\'' || c == '"') {
+            return skipQuoted(sql, start, c);
+        }
+        if(sql.startsWith("--", start)) {
+            return skipUntil(sql, start + 2, "\n");
+        }
+        if(sql.startsWith("/*", start)) {
+            return skipUntil(sql, start + 2, "*/");
+        }
+        return start;
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while(i < sql.length()) {
+            if(sql.charAt(i) == quote) {
+                if(i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipUntil(String sql, int start, String end) {
+        final int index = sql.indexOf(end, start);
+        return index < 0 ? sql.length() : index + end.length();
+    }
+
+    /**
+     * A statement with its collection arguments expanded into positional parameters.
+     */
+    static final class Expansion {
+
+        private final String sql;
+        private final Object[] args;
+
+        private Expansion(String sql, Object[] args) {
+            this.sql = sql;
+            this.args = args;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        Object[] getArgs() {
+            return args;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package no.obje.jdbcmiddleware.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps prepared statements open between executions, so that the same SQL does not have to be prepared over and over
+ * on the same physical connection. Statements are cached per physical connection in a bounded LRU, keyed by SQL and
+ * whether generated keys are returned. Statements of connections which have been closed are discarded.
+ * <p>
+ * The cache only pays off when the data source hands out the same physical connections repeatedly, i.e. when it is a
+ * connection pool. Pooled connections are unwrapped to their physical connection, and statements are prepared on it
+ * directly, so that they survive the pooled connection being returned. Register {@link #invalidate(Connection)} as a
+ * retire listener of a {@link no.obje.jdbcmiddleware.pool.PooledDataSource}, so that statements are closed together
+ * with their connection when it expires or fails. Otherwise statements of closed connections are only discarded when a
+ * statement is prepared on a connection which has no cached statements yet.
+ * <p>
+ * Since cached statements bypass the pooled connection, a connection failure (SQL state 08xxx) raised while executing
+ * one is not seen by the pool, and the connection is returned to the pool rather than retired. The pool still replaces
+ * it when it fails validation on a later borrow, but keep the validation skip window short when using this cache.
+ */
+public class StatementCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementCache.class);
+
+    private final int maxStatementsPerConnection;
+    private final Map<Connection, ConnectionStatements> connections = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxStatementsPerConnection the maximum number of statements kept open per physical connection
+     */
+    public StatementCache(int maxStatementsPerConnection) {
+        if(maxStatementsPerConnection < 1) {
+            throw new IllegalArgumentException("Max statements per connection must be a positive number");
+        }
+        this.maxStatementsPerConnection = maxStatementsPerConnection;
+    }
+
+    PreparedStatement prepareStatement(Connection connection, String sql, int autoGeneratedKeys) throws SQLException {
+        final Connection physicalConnection = unwrap(connection);
+        ConnectionStatements statements = connections.get(physicalConnection);
+        if(statements == null) {
+            removeClosedConnections();
+            statements = connections.computeIfAbsent(physicalConnection, ConnectionStatements::new);
+        }
+        return statements.prepareStatement(new StatementKey(sql, autoGeneratedKeys));
+    }
+
+    /**
+     * Hands a statement back after use. Statements which are not cached are closed.
+     */
+    void release(PreparedStatement statement) throws SQLException {
+        final ConnectionStatements statements = connections.get(statement.getConnection());
+        if(statements == null || !statements.release(statement)) {
+            statement.close();
+        }
+    }
+
+    /**
+     * Closes and discards every statement cached for the given connection, typically because it is about to be closed.
+     */
+    public void invalidate(Connection connection) {
+        try {
+            final ConnectionStatements statements = connections.remove(unwrap(connection));
+            if(statements != null) {
+                statements.closeAll();
+            }
+        }
+        catch(SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Connection unwrap(Connection connection) throws SQLException {
+        return connection.isWrapperFor(Connection.class) ? connection.unwrap(Connection.class) : connection;
+    }
+
+    private void removeClosedConnections() {
+        final Iterator<Map.Entry<Connection, ConnectionStatements>> iterator = connections.entrySet().iterator();
+        while(iterator.hasNext()) {
+            final Map.Entry<Connection, ConnectionStatements> entry = iterator.next();
+            if(isClosed(entry.getKey())) {
+                iterator.remove();
+                entry.getValue().closeAll();
+            }
+        }
+    }
+
+    private static boolean isClosed(Connection connection) {
+        try {
+            return connection.isClosed();
+        }
+        catch(SQLException e) {
+            return true;
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        }
+        catch(SQLException e) {
+            LOGGER.debug("Unable to close cached statement", e);
+        }
+    }
+
+    private final class ConnectionStatements {
+
+        private final Connection connection;
+        private final Map<PreparedStatement, StatementKey> keys = new IdentityHashMap<>();
+        private final Map<StatementKey, CachedStatement> statements;
+
+        private ConnectionStatements(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<StatementKey, CachedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<StatementKey, CachedStatement> eldest) {
+                    if(size() <= maxStatementsPerConnection) {
+                        return false;
+                    }
+                    evictions.increment();
+                    keys.remove(eldest.getValue().statement);
+                    if(!eldest.getValue().inUse) {
+                        closeQuietly(eldest.getValue().statement);
+                    }
+                    return true;
+                }
+            };
+        }
+
+        private synchronized PreparedStatement prepareStatement(StatementKey key) throws SQLException {
+            final CachedStatement cached = statements.get(key);
+            if(cached != null && !cached.inUse) {
+                if(!cached.statement.isClosed()) {
+                    hits.increment();
+                    cached.inUse = true;
+                    return cached.statement;
+                }
+                statements.remove(key);
+                keys.remove(cached.statement);
+            }
+            misses.increment();
+            final PreparedStatement statement = key.autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS
+                    ? connection.prepareStatement(key.sql, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(key.sql);
+            if(cached == null || !cached.inUse) {
+                keys.put(statement, key);
+                statements.put(key, new CachedStatement(statement));
+            }
+            return statement;
+        }
+
+        private synchronized boolean release(PreparedStatement statement) {
+            final StatementKey key = keys.get(statement);
+            if(key == null) {
+                return false;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            }
+            catch(SQLException e) {
+                LOGGER.debug("Unable to reset cached statement, discarding it", e);
+                keys.remove(statement);
+                statements.remove(key);
+                return false;
+            }
+            statements.get(key).inUse = false;
+            return true;
+        }
+
+        private synchronized void closeAll() {
+            statements.values().forEach(cached -> closeQuietly(cached.statement));
+            statements.clear();
+            keys.clear();
+        }
+    }
+
+    private static final class CachedStatement {
+
+        private final PreparedStatement statement;
+        private boolean inUse = true;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private static final class StatementKey {
+
+        private final String sql;
+        private final int autoGeneratedKeys;
+
+        private StatementKey(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof StatementKey)) {
+                return false;
+            }
+            final StatementKey other = (StatementKey)o;
+            return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + autoGeneratedKeys;
+        }
+    }
+}
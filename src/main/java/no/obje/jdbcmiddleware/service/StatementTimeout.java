@@ -0,0 +1,97 @@
+package no.obje.jdbcmiddleware.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The timeout of a single statement. The statement is given the timeout as its query timeout, and is also cancelled
+ * from a shared scheduler if it is still running when the timeout passes, since some drivers ignore query timeouts and
+ * others only enforce them in whole seconds.
+ */
+final class StatementTimeout implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementTimeout.class);
+
+    private static final ScheduledThreadPoolExecutor CANCELLER = newCanceller();
+
+    private final Statement statement;
+    private final long timeoutNanos;
+    private final ScheduledFuture<?> cancellation;
+    private volatile boolean cancelled;
+    private boolean closed;
+
+    private StatementTimeout(Statement statement, long timeoutNanos) {
+        this.statement = statement;
+        this.timeoutNanos = timeoutNanos;
+        this.cancellation = CANCELLER.schedule(this::cancel, timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts the timeout of the given statement, which should be closed as soon as the statement has run.
+     */
+    static StatementTimeout start(Statement statement, long timeoutNanos) throws SQLException {
+        statement.setQueryTimeout((int)Math.min(Integer.MAX_VALUE, (timeoutNanos + 999_999_999L) / 1_000_000_000L));
+        return new StatementTimeout(statement, timeoutNanos);
+    }
+
+    /**
+     * @return whether the given failure of the statement was caused by the timeout passing
+     */
+    boolean isTimeout(Throwable failure) {
+        if(cancelled) {
+            return true;
+        }
+        for(Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if(cause instanceof SQLTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    /**
+     * Stops the timeout. Waits for a cancellation already in progress to finish, so that the statement can never be
+     * cancelled once this returns, since it may then be reused from the statement cache by an unrelated execution.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        cancellation.cancel(false);
+    }
+
+    private synchronized void cancel() {
+        if(closed) {
+            return;
+        }
+        cancelled = true;
+        try {
+            statement.cancel();
+        }
+        catch(SQLException | RuntimeException e) {
+            LOGGER.warn("Unable to cancel statement which timed out", e);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newCanceller() {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ScheduledThreadPoolExecutor canceller = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "jdbc-middleware-canceller-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        canceller.setRemoveOnCancelPolicy(true);
+        return canceller;
+    }
+}
@@ -1,53 +1,156 @@
 package no.obje.jdbcmiddleware.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Savepoint;
 import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class TransactionManager {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionManager.class);
+
     private final ConnectionManager connectionManager;
+    private final TransactionOptions defaultOptions;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retriesExhausted = new LongAdder();
 
     public TransactionManager(ConnectionManager connectionManager) {
+        this(connectionManager, TransactionOptions.defaults());
+    }
+
+    /**
+     * @param connectionManager connection manager used for managing transactions
+     * @param defaultOptions options of every transaction not given options of its own
+     */
+    public TransactionManager(ConnectionManager connectionManager, TransactionOptions defaultOptions) {
         this.connectionManager = Objects.requireNonNull(connectionManager);
+        this.defaultOptions = Objects.requireNonNull(defaultOptions);
     }
 
     public void doInTransaction(Runnable runnable) {
+        doInTransaction(defaultOptions, runnable);
+    }
+
+    public <T> T doInTransaction(Callable<T> callable) {
+        return doInTransaction(defaultOptions, callable);
+    }
+
+    public void doInTransaction(Propagation propagation, Runnable runnable) {
+        doInTransaction(defaultOptions.withPropagation(propagation), runnable);
+    }
+
+    public <T> T doInTransaction(Propagation propagation, Callable<T> callable) {
+        return doInTransaction(defaultOptions.withPropagation(propagation), callable);
+    }
+
+    public void doInTransaction(TransactionOptions options, Runnable runnable) {
+        doInTransaction(options, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the given callable in a transaction. If a transaction is already in progress, the propagation of the given
+     * options decides whether the callable joins it, or runs inside a savepoint which is rolled back if the callable
+     * fails. A new transaction failing on a serialization failure or a deadlock is run again as the retry policy of the
+     * given options allows.
+     */
+    public <T> T doInTransaction(TransactionOptions options, Callable<T> callable) {
         boolean transactionInProgress = connectionManager.isTransactionInProgress();
+        if(transactionInProgress && options.getPropagation() == Propagation.NESTED) {
+            return doInSavepoint(callable);
+        }
         if(!transactionInProgress) {
-            connectionManager.startTransaction();
+            return doInNewTransaction(options, callable);
         }
         try {
-            runnable.run();
-            if(!transactionInProgress) {
-                connectionManager.commitTransaction();
-            }
+            return callable.call();
         }
         catch(Throwable throwable) {
-            if(!transactionInProgress) {
-                connectionManager.rollbackTransaction();
+            throw new RuntimeException("Something went wrong during execution, rolled back transaction", throwable);
+        }
+    }
+
+    /**
+     * @return the number of times a transaction has been run again after failing
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * @return the number of transactions which kept failing on serialization failures or deadlocks until they ran out
+     *         of attempts
+     */
+    public long getRetriesExhaustedCount() {
+        return retriesExhausted.sum();
+    }
+
+    private <T> T doInNewTransaction(TransactionOptions options, Callable<T> callable) {
+        final RetryPolicy retryPolicy = options.getRetryPolicy();
+        for(int attempt = 1; ; attempt++) {
+            try {
+                return runTransaction(options, callable);
+            }
+            catch(RuntimeException e) {
+                if(!retryPolicy.isTransient(e)) {
+                    throw e;
+                }
+                if(attempt >= retryPolicy.getMaxAttempts()) {
+                    if(retryPolicy.getMaxAttempts() > 1) {
+                        retriesExhausted.increment();
+                    }
+                    throw e;
+                }
+                LOGGER.debug("Transaction failed on attempt {}, retrying", attempt, e);
+                retries.increment();
+                backOff(retryPolicy.backoffNanos(attempt), e);
             }
-            throw new RuntimeException("Something went wrong during execution, rolled back transaction");
         }
     }
 
-    public <T> T doInTransaction(Callable<T> callable) {
-        boolean transactionInProgress = connectionManager.isTransactionInProgress();
-        if(!transactionInProgress) {
-            connectionManager.startTransaction();
+    private <T> T runTransaction(TransactionOptions options, Callable<T> callable) {
+        connectionManager.startTransaction(options);
+        final T result;
+        try {
+            result = callable.call();
         }
+        catch(Throwable throwable) {
+            connectionManager.rollbackTransaction();
+            throw new RuntimeException("Something went wrong during execution, rolled back transaction", throwable);
+        }
+        connectionManager.commitTransaction();
+        return result;
+    }
+
+    private static void backOff(long nanos, RuntimeException failure) {
         try {
-            final T result = callable.call();
-            if(!transactionInProgress) {
-                connectionManager.commitTransaction();
-            }
-            return result;
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.addSuppressed(e);
+            throw failure;
+        }
+    }
+
+    private <T> T doInSavepoint(Callable<T> callable) {
+        final Savepoint savepoint = connectionManager.setSavepoint();
+        final T result;
+        try {
+            result = callable.call();
         }
         catch(Throwable throwable) {
-            if(!transactionInProgress) {
-                connectionManager.rollbackTransaction();
-            }
-            throw new RuntimeException("Something went wrong during execution, rolled back transaction");
+            connectionManager.rollbackToSavepoint(savepoint);
+            throw new RuntimeException("Something went wrong during execution, rolled back to savepoint", throwable);
         }
+        connectionManager.releaseSavepoint(savepoint);
+        return result;
     }
 
 }
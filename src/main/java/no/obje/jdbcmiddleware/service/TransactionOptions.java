@@ -0,0 +1,116 @@
+package no.obje.jdbcmiddleware.service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Options of a transaction run by the {@link TransactionManager}. Instances are immutable, every {@code with} method
+ * returns a copy. Only the options of the outermost transaction apply, a transaction joining another one keeps the
+ * options it joins.
+ */
+public final class TransactionOptions {
+
+    private static final TransactionOptions DEFAULTS =
+            new TransactionOptions(Propagation.REQUIRED, false, false, Isolation.DEFAULT, null, RetryPolicy.none());
+
+    private final Propagation propagation;
+    private final boolean lazyConnection;
+    private final boolean readOnly;
+    private final Isolation isolation;
+    private final Duration timeout;
+    private final RetryPolicy retryPolicy;
+
+    private TransactionOptions(
+            Propagation propagation,
+            boolean lazyConnection,
+            boolean readOnly,
+            Isolation isolation,
+            Duration timeout,
+            RetryPolicy retryPolicy
+    ) {
+        if(timeout != null && (timeout.isZero() || timeout.isNegative())) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.propagation = Objects.requireNonNull(propagation);
+        this.lazyConnection = lazyConnection;
+        this.readOnly = readOnly;
+        this.isolation = Objects.requireNonNull(isolation);
+        this.timeout = timeout;
+        this.retryPolicy = Objects.requireNonNull(retryPolicy);
+    }
+
+    /**
+     * Joins a transaction in progress, and acquires the connection of a new transaction as soon as it starts. New
+     * transactions are read-write, at the isolation level of the connection, without a timeout, and are not retried.
+     */
+    public static TransactionOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public TransactionOptions withPropagation(Propagation propagation) {
+        return new TransactionOptions(propagation, lazyConnection, readOnly, isolation, timeout, retryPolicy);
+    }
+
+    /**
+     * @param lazyConnection whether the connection of the transaction should be acquired when the first statement
+     *                       needs it, instead of when the transaction starts. A transaction which never runs a
+     *                       statement then never holds a connection.
+     */
+    public TransactionOptions withLazyConnection(boolean lazyConnection) {
+        return new TransactionOptions(propagation, lazyConnection, readOnly, isolation, timeout, retryPolicy);
+    }
+
+    /**
+     * @param readOnly whether the connection should be put in read-only mode for the duration of the transaction,
+     *                 allowing the driver and database to optimize for reads
+     */
+    public TransactionOptions withReadOnly(boolean readOnly) {
+        return new TransactionOptions(propagation, lazyConnection, readOnly, isolation, timeout, retryPolicy);
+    }
+
+    public TransactionOptions withIsolation(Isolation isolation) {
+        return new TransactionOptions(propagation, lazyConnection, readOnly, isolation, timeout, retryPolicy);
+    }
+
+    /**
+     * @param timeout how long the transaction may run. Every statement is given the time remaining as its query
+     *                timeout, and statements started after the timeout has passed fail. Null for no timeout.
+     */
+    public TransactionOptions withTimeout(Duration timeout) {
+        return new TransactionOptions(propagation, lazyConnection, readOnly, isolation, timeout, retryPolicy);
+    }
+
+    /**
+     * @param retryPolicy decides whether the transaction is run again after failing on a serialization failure or a
+     *                    deadlock. Only a transaction which started a new transaction is retried, since a joined
+     *                    transaction can not be run again without the work it joined.
+     */
+    public TransactionOptions withRetryPolicy(RetryPolicy retryPolicy) {
+        return new TransactionOptions(propagation, lazyConnection, readOnly, isolation, timeout, retryPolicy);
+    }
+
+    public Propagation getPropagation() {
+        return propagation;
+    }
+
+    public boolean isLazyConnection() {
+        return lazyConnection;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public Isolation getIsolation() {
+        return isolation;
+    }
+
+    public Optional<Duration> getTimeout() {
+        return Optional.ofNullable(timeout);
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+}
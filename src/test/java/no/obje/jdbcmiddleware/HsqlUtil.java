@@ -9,8 +9,12 @@ import java.sql.Statement;
 public class HsqlUtil {
 
     public static JDBCDataSource setupDataSource() throws SQLException {
+        return setupDataSource("db");
+    }
+
+    public static JDBCDataSource setupDataSource(String database) throws SQLException {
         final JDBCDataSource jdbcDataSource = new JDBCDataSource();
-        jdbcDataSource.setDatabase("jdbc:hsqldb:mem:db");
+        jdbcDataSource.setDatabase("jdbc:hsqldb:mem:" + database);
         Statement statement = jdbcDataSource.getConnection().createStatement();
         statement.addBatch("DROP SCHEMA public CASCADE");
         statement.executeBatch();
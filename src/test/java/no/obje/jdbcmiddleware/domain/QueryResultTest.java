@@ -5,7 +5,9 @@ import org.junit.Test;
 
 import java.sql.Date;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.util.Optional;
 
@@ -13,7 +15,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class QueryResultTest {
@@ -213,4 +220,112 @@ public class QueryResultTest {
     public void get_result_set_should_return_expected_result_set() {
         assertEquals(resultSetMock, queryResult.getResultSet());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void columns_should_be_read_by_index_resolved_once_from_meta_data() throws SQLException {
+        final ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(2);
+        when(metaData.getColumnLabel(1)).thenReturn("ID");
+        when(metaData.getColumnLabel(2)).thenReturn("NAME");
+        when(resultSetMock.getMetaData()).thenReturn(metaData);
+        when(resultSetMock.getString(2)).thenReturn("Jon Snow");
+        when(resultSetMock.getLong(1)).thenReturn(1L);
+
+        assertEquals("Jon Snow", queryResult.requireString("name"));
+        assertEquals("Jon Snow", queryResult.requireString("name"));
+        assertEquals((Long)1L, queryResult.requireLong("Id"));
+
+        verify(resultSetMock, times(1)).getMetaData();
+        verify(resultSetMock, never()).getString(anyString());
+        verify(resultSetMock, never()).getLong(anyString());
+    }
+
+    @Test
+    public void column_missing_from_meta_data_should_be_read_by_label() throws SQLException {
+        final ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnLabel(1)).thenReturn("ID");
+        when(resultSetMock.getMetaData()).thenReturn(metaData);
+        when(resultSetMock.getString("name")).thenReturn("Jon Snow");
+
+        assertEquals("Jon Snow", queryResult.requireString("name"));
+    }
+
+    @Test
+    public void get_long_or_default_with_no_value_should_return_default() throws SQLException {
+        when(resultSetMock.getLong(any())).thenReturn(0L);
+        when(resultSetMock.wasNull()).thenReturn(true);
+        assertEquals(-1L, queryResult.getLongOrDefault("balance", -1L));
+    }
+
+    @Test
+    public void get_long_or_default_with_value_should_return_value() throws SQLException {
+        when(resultSetMock.getLong(any())).thenReturn(42L);
+        assertEquals(42L, queryResult.getLongOrDefault("balance", -1L));
+    }
+
+    @Test
+    public void get_int_or_default_by_index_should_return_value_or_default() throws SQLException {
+        when(resultSetMock.getInt(3)).thenReturn(7);
+        assertEquals(7, queryResult.getIntOrDefault(3, -1));
+        when(resultSetMock.wasNull()).thenReturn(true);
+        assertEquals(-1, queryResult.getIntOrDefault(3, -1));
+    }
+
+    @Test
+    public void get_double_and_boolean_or_default_with_no_value_should_return_default() throws SQLException {
+        when(resultSetMock.wasNull()).thenReturn(true);
+        assertEquals(2.5, queryResult.getDoubleOrDefault("rating", 2.5), 0D);
+        assertTrue(queryResult.getBooleanOrDefault(2, true));
+    }
+
+    @Test
+    public void require_int_by_index_with_value_should_return_expected_value() throws SQLException {
+        when(resultSetMock.getInt(1)).thenReturn(3);
+        assertEquals(3, queryResult.requireInt(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void require_long_by_index_with_no_value_should_throw_an_exception() throws SQLException {
+        when(resultSetMock.wasNull()).thenReturn(true);
+        queryResult.requireLong(1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void require_int_by_name_with_no_value_should_throw_an_exception() throws SQLException {
+        when(resultSetMock.wasNull()).thenReturn(true);
+        queryResult.requireInt("age");
+    }
+
+    @Test
+    public void require_double_and_boolean_by_index_with_value_should_return_expected_value() throws SQLException {
+        when(resultSetMock.getDouble(1)).thenReturn(1.5);
+        when(resultSetMock.getBoolean(2)).thenReturn(true);
+        assertEquals(1.5, queryResult.requireDouble(1), 0D);
+        assertTrue(queryResult.requireBoolean(2));
+    }
+
+    @Test
+    public void is_null_should_return_whether_column_has_a_value() throws SQLException {
+        when(resultSetMock.getObject("name")).thenReturn(null);
+        when(resultSetMock.wasNull()).thenReturn(true, false);
+        when(resultSetMock.getObject(2)).thenReturn("Jon Snow");
+        assertTrue(queryResult.isNull("name"));
+        assertFalse(queryResult.isNull(2));
+    }
+
+    @Test
+    public void is_null_on_numeric_column_should_use_primitive_getter() throws SQLException {
+        final ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnLabel(1)).thenReturn("balance");
+        when(metaData.getColumnType(1)).thenReturn(Types.NUMERIC);
+        when(resultSetMock.getMetaData()).thenReturn(metaData);
+        when(resultSetMock.wasNull()).thenReturn(true, false);
+        assertTrue(queryResult.isNull("balance"));
+        assertFalse(queryResult.isNull(1));
+        verify(resultSetMock, times(2)).getDouble(1);
+        verify(resultSetMock, never()).getObject(anyInt());
+        verify(resultSetMock, never()).getObject(anyString());
+    }
+}
@@ -0,0 +1,37 @@
+package no.obje.jdbcmiddleware.metrics;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramListenerTest {
+
+    @Test
+    public void statements_should_be_recorded_per_sql_and_outcome() {
+        final LatencyHistogramListener listener = new LatencyHistogramListener();
+        listener.queryExecuted(new QueryEvent("SELECT 1", Collections.emptyList(), 10, 20, 30, 1, null));
+        listener.queryExecuted(new QueryEvent("SELECT 1", Collections.emptyList(), 10, 20, 30, 1, null));
+        listener.queryExecuted(new QueryEvent("SELECT 1", Collections.emptyList(), 10, 20, 30, 0, new RuntimeException()));
+        listener.connectionAcquired(100);
+
+        assertEquals(2L, listener.getStatementHistograms().get("SELECT 1").getCount());
+        assertEquals(60L, listener.getStatementHistograms().get("SELECT 1").getMaxNanos());
+        assertEquals(1L, listener.getFailureHistograms().get("SELECT 1").getCount());
+        assertEquals(1L, listener.getConnectionAcquireHistogram().getCount());
+    }
+
+    @Test
+    public void statements_beyond_max_should_be_recorded_as_other() {
+        final LatencyHistogramListener listener = new LatencyHistogramListener(1);
+        listener.queryExecuted(new QueryEvent("SELECT 1", Collections.emptyList(), 0, 1, 0, 1, null));
+        listener.queryExecuted(new QueryEvent("SELECT 2", Collections.emptyList(), 0, 1, 0, 1, null));
+        listener.queryExecuted(new QueryEvent("SELECT 3", Collections.emptyList(), 0, 1, 0, 1, null));
+
+        assertEquals(2, listener.getStatementHistograms().size());
+        assertTrue(listener.getStatementHistograms().containsKey("SELECT 1"));
+        assertEquals(2L, listener.getStatementHistograms().get(LatencyHistogramListener.OTHER_STATEMENTS).getCount());
+    }
+}
@@ -0,0 +1,49 @@
+package no.obje.jdbcmiddleware.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty_histogram_should_report_zero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getValueAtPercentile(99));
+        assertEquals(0D, histogram.getMeanNanos(), 0D);
+    }
+
+    @Test
+    public void percentiles_should_be_within_bucket_precision_of_recorded_values() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for(long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000L, histogram.getCount());
+        assertEquals(1_000_000L, histogram.getMaxNanos());
+        assertWithinPrecision(500_000L, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(990_000L, histogram.getValueAtPercentile(99));
+        assertEquals(1_000_000L, histogram.getValueAtPercentile(100));
+        assertEquals(500_500D, histogram.getMeanNanos(), 0.001D);
+    }
+
+    @Test
+    public void every_value_should_fall_in_a_bucket_containing_it() {
+        for(long value : new long[] {0L, 1L, 15L, 16L, 17L, 31L, 32L, 33L, 1_000L, 123_456_789L, Long.MAX_VALUE}) {
+            final int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentile_above_hundred_should_throw_expected_exception() {
+        new LatencyHistogram().getValueAtPercentile(101);
+    }
+
+    private void assertWithinPrecision(long expected, long actual) {
+        assertTrue("Expected " + actual + " to be close to " + expected, Math.abs(actual - expected) <= expected / 16);
+    }
+}
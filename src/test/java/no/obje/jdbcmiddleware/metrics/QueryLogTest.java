@@ -0,0 +1,63 @@
+package no.obje.jdbcmiddleware.metrics;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryLogTest {
+
+    @Test
+    public void slow_query_log_should_accept_records_without_dropping_them() {
+        try(QueryLog queryLog = QueryLog.slowerThan(Duration.ofMillis(10))) {
+            queryLog.queryExecuted(event(Duration.ofMillis(20).toNanos()));
+            queryLog.queryExecuted(event(Duration.ofMillis(1).toNanos()));
+            assertEquals(0L, queryLog.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void sampled_query_log_should_accept_records_without_dropping_them() {
+        try(QueryLog queryLog = QueryLog.sampled(2)) {
+            for(int i = 0; i < 100; i++) {
+                queryLog.queryExecuted(event(1000L));
+            }
+            assertEquals(0L, queryLog.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void disabled_query_log_should_ignore_records() {
+        try(QueryLog queryLog = QueryLog.off()) {
+            queryLog.queryExecuted(event(Long.MAX_VALUE / 2));
+            assertEquals(0L, queryLog.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void combined_listeners_should_all_be_notified() {
+        final LatencyHistogramListener first = new LatencyHistogramListener();
+        final LatencyHistogramListener second = new LatencyHistogramListener();
+        final QueryListener combined = QueryListener.of(first, second);
+        combined.queryExecuted(event(1000L));
+        combined.connectionAcquired(10L);
+        assertEquals(1L, first.getStatementHistograms().get("SELECT * FROM customer WHERE id = ?").getCount());
+        assertEquals(1L, second.getConnectionAcquireHistogram().getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void non_positive_sample_rate_should_throw_expected_exception() {
+        QueryLog.sampled(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative_threshold_should_throw_expected_exception() {
+        QueryLog.slowerThan(Duration.ofMillis(-1));
+    }
+
+    private QueryEvent event(long executeNanos) {
+        return new QueryEvent("SELECT * FROM customer WHERE id = ?", Arrays.asList((Object)1), 0L, executeNanos, 0L, 1, null);
+    }
+}
@@ -0,0 +1,230 @@
+package no.obje.jdbcmiddleware.pool;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import no.obje.jdbcmiddleware.domain.QueryResult;
+import no.obje.jdbcmiddleware.service.JdbcService;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class PooledDataSourceTest {
+
+    private JDBCDataSource dataSource;
+    private PooledDataSource pool;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTableAndInsertJonSnow(dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        if(pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void creating_pool_should_open_min_size_connections() {
+        pool = new PooledDataSource(dataSource, PoolConfig.defaults().withMinSize(3));
+        assertEquals(3, pool.getSize());
+        assertEquals(3, pool.getIdleCount());
+    }
+
+    @Test
+    public void closed_connection_should_be_reused_by_next_borrower() throws Exception {
+        pool = new PooledDataSource(dataSource, PoolConfig.defaults().withMinSize(0));
+        final Connection first = pool.getConnection();
+        final Connection physical = first.unwrap(Connection.class);
+        first.close();
+        final Connection second = pool.getConnection();
+        assertSame(physical, second.unwrap(Connection.class));
+        assertNotSame(first, second);
+        assertEquals(1, pool.getSize());
+        assertEquals(2, pool.getBorrowCount());
+        second.close();
+    }
+
+    @Test
+    public void closed_connection_should_reject_further_use() throws Exception {
+        pool = new PooledDataSource(dataSource, PoolConfig.defaults().withMinSize(0));
+        final Connection connection = pool.getConnection();
+        connection.close();
+        assertTrue(connection.isClosed());
+        try {
+            connection.createStatement();
+        }
+        catch(SQLException e) {
+            assertEquals("Connection is closed", e.getMessage());
+            return;
+        }
+        throw new AssertionError("Expected use of a closed connection to fail");
+    }
+
+    @Test
+    public void returned_connection_should_be_reset_to_initial_state() throws Exception {
+        pool = new PooledDataSource(dataSource, PoolConfig.defaults().withMinSize(0));
+        final Connection connection = pool.getConnection();
+        connection.setAutoCommit(false);
+        connection.createStatement().executeUpdate("DELETE FROM customer");
+        connection.setReadOnly(true);
+        connection.close();
+        final Connection next = pool.getConnection();
+        assertTrue(next.getAutoCommit());
+        assertFalse(next.isReadOnly());
+        assertEquals(1, new JdbcService(pool).queryForList("SELECT * FROM customer", QueryResult::getResultSet).size());
+        next.close();
+    }
+
+    @Test
+    public void borrowing_from_exhausted_pool_should_time_out() throws Exception {
+        pool = new PooledDataSource(
+                dataSource,
+                PoolConfig.defaults().withMinSize(0).withMaxSize(1).withConnectionTimeout(Duration.ofMillis(50))
+        );
+        final Connection connection = pool.getConnection();
+        try {
+            pool.getConnection();
+        }
+        catch(SQLTransientConnectionException e) {
+            assertEquals(1, pool.getTimeoutCount());
+            return;
+        }
+        finally {
+            connection.close();
+        }
+        throw new AssertionError("Expected borrowing from an exhausted pool to time out");
+    }
+
+    @Test
+    public void connection_past_max_lifetime_should_be_replaced() throws Exception {
+        pool = new PooledDataSource(
+                dataSource,
+                PoolConfig.defaults().withMinSize(1).withMaxLifetime(Duration.ofMillis(1))
+        );
+        Thread.sleep(5);
+        final Connection connection = pool.getConnection();
+        assertEquals(1, pool.getSize());
+        Thread.sleep(5);
+        connection.close();
+        assertEquals(0, pool.getSize());
+    }
+
+    @Test
+    public void recently_used_connection_should_not_be_validated() throws Exception {
+        final Connection physical = mockConnection();
+        final DataSource mockDataSource = mock(DataSource.class);
+        when(mockDataSource.getConnection()).thenReturn(physical);
+        pool = new PooledDataSource(mockDataSource, PoolConfig.defaults().withMinSize(0));
+        pool.getConnection().close();
+        pool.getConnection().close();
+        verify(physical, never()).isValid(anyInt());
+    }
+
+    @Test
+    public void idle_connection_failing_validation_should_be_replaced() throws Exception {
+        final Connection invalid = mockConnection();
+        final Connection valid = mockConnection();
+        when(invalid.isValid(anyInt())).thenReturn(false);
+        final DataSource mockDataSource = mock(DataSource.class);
+        when(mockDataSource.getConnection()).thenReturn(invalid, valid);
+        pool = new PooledDataSource(
+                mockDataSource,
+                PoolConfig.defaults().withMinSize(1).withValidationSkipWindow(Duration.ZERO)
+        );
+        final Connection connection = pool.getConnection();
+        assertSame(valid, connection.unwrap(Connection.class));
+        verify(invalid, atLeastOnce()).isValid(anyInt());
+        verify(invalid, times(1)).close();
+        connection.close();
+    }
+
+    @Test
+    public void connection_failure_should_retire_connection_on_close() throws Exception {
+        final Connection physical = mockConnection();
+        when(physical.createStatement()).thenThrow(new SQLException("Connection reset", "08006"));
+        final DataSource mockDataSource = mock(DataSource.class);
+        when(mockDataSource.getConnection()).thenReturn(physical);
+        pool = new PooledDataSource(mockDataSource, PoolConfig.defaults().withMinSize(0));
+        final Connection connection = pool.getConnection();
+        try {
+            connection.createStatement();
+        }
+        catch(SQLException ignored) {
+        }
+        connection.close();
+        verify(physical).close();
+        assertEquals(0, pool.getSize());
+    }
+
+    @Test
+    public void closing_pool_should_close_idle_connections() throws Exception {
+        final Connection physical = mockConnection();
+        final DataSource mockDataSource = mock(DataSource.class);
+        when(mockDataSource.getConnection()).thenReturn(physical);
+        pool = new PooledDataSource(mockDataSource, PoolConfig.defaults().withMinSize(1));
+        pool.close();
+        verify(physical).close();
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void housekeeping_should_retire_expired_idle_connections_and_refill_to_min_size() throws Exception {
+        final Connection first = mockConnection();
+        final Connection second = mockConnection();
+        final Connection replacement = mockConnection();
+        final DataSource mockDataSource = mock(DataSource.class);
+        when(mockDataSource.getConnection()).thenReturn(first, second, replacement);
+        pool = new PooledDataSource(
+                mockDataSource,
+                PoolConfig.defaults()
+                        .withMinSize(1)
+                        .withMaxLifetime(Duration.ofMillis(100))
+                        .withHousekeepingInterval(Duration.ofMillis(10))
+        );
+        final Connection connection = pool.getConnection();
+        Thread.sleep(110);
+        connection.close();
+        verify(first).close();
+        Thread.sleep(30);
+        assertEquals(1, pool.getSize());
+        assertEquals(1, pool.getIdleCount());
+        verify(second, never()).close();
+        Thread.sleep(150);
+        verify(second).close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void config_with_min_size_above_max_size_should_throw_expected_exception() {
+        PoolConfig.defaults().withMinSize(5).withMaxSize(4);
+    }
+
+    private static Connection mockConnection() throws SQLException {
+        final Connection connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        return connection;
+    }
+}
@@ -0,0 +1,200 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import no.obje.jdbcmiddleware.domain.ArgumentBinder;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class ArgumentBindersTest {
+
+    private final ArgumentBinders argumentBinders = ArgumentBinders.defaults();
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+
+    @Test
+    public void null_should_be_bound_as_sql_null() throws Exception {
+        argumentBinders.bind(statement, 1, null);
+        verify(statement).setObject(1, null);
+    }
+
+    @Test
+    public void built_in_types_should_be_bound_with_matching_setter() throws Exception {
+        final UUID uuid = UUID.randomUUID();
+        final Instant instant = Instant.parse("2017-05-01T12:00:00Z");
+        argumentBinders.bind(statement, 1, 1.5D);
+        argumentBinders.bind(statement, 2, new BigDecimal("10.25"));
+        argumentBinders.bind(statement, 3, uuid);
+        argumentBinders.bind(statement, 4, instant);
+        argumentBinders.bind(statement, 5, LocalDateTime.of(2017, 5, 1, 12, 0));
+        argumentBinders.bind(statement, 6, new byte[] {1, 2});
+        argumentBinders.bind(statement, 7, LocalDate.of(2017, 5, 1));
+        verify(statement).setDouble(1, 1.5D);
+        verify(statement).setBigDecimal(2, new BigDecimal("10.25"));
+        verify(statement).setObject(3, uuid);
+        verify(statement).setTimestamp(4, Timestamp.from(instant));
+        verify(statement).setTimestamp(5, Timestamp.valueOf(LocalDateTime.of(2017, 5, 1, 12, 0)));
+        verify(statement).setBytes(6, new byte[] {1, 2});
+        verify(statement).setDate(7, Date.valueOf(LocalDate.of(2017, 5, 1)));
+    }
+
+    @Test
+    public void enum_should_be_bound_by_name() throws Exception {
+        argumentBinders.bind(statement, 1, House.STARK);
+        argumentBinders.bind(statement, 2, House.LANNISTER);
+        verify(statement).setString(1, "STARK");
+        verify(statement).setString(2, "LANNISTER");
+    }
+
+    @Test
+    public void registered_binder_should_be_used_for_subclasses() throws Exception {
+        final ArgumentBinders binders = argumentBinders.with(Sigil.class, (stmt, index, value) ->
+                stmt.setString(index, value.describe())
+        );
+        binders.bind(statement, 1, new Direwolf());
+        verify(statement).setString(1, "Direwolf");
+    }
+
+    @Test
+    public void registered_binder_should_replace_built_in_binder() throws Exception {
+        final ArgumentBinders binders = argumentBinders.with(UUID.class, (stmt, index, value) ->
+                stmt.setString(index, value.toString())
+        );
+        final UUID uuid = UUID.randomUUID();
+        binders.bind(statement, 1, uuid);
+        verify(statement).setString(1, uuid.toString());
+    }
+
+    @Test
+    public void registered_binder_opening_streams_should_be_given_opened_streams() throws Exception {
+        final InputStream content = new ByteArrayInputStream(new byte[] {1, 2, 3});
+        final ArgumentBinders binders = argumentBinders.with(Path.class, new ArgumentBinder<Path>() {
+            @Override
+            public void bind(PreparedStatement stmt, int index, Path value) throws SQLException {
+                throw new AssertionError("Expected streams to be tracked");
+            }
+
+            @Override
+            public void bind(PreparedStatement stmt, int index, Path value, List<Closeable> openedStreams)
+                    throws SQLException {
+                openedStreams.add(content);
+                stmt.setBinaryStream(index, content);
+            }
+        });
+        final List<Closeable> openedStreams = new ArrayList<>();
+        binders.bind(statement, 1, Paths.get("document.pdf"), openedStreams);
+        assertEquals(1, openedStreams.size());
+        assertSame(content, openedStreams.get(0));
+        verify(statement).setBinaryStream(1, content);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupported_argument_type_should_throw_expected_exception() throws Exception {
+        argumentBinders.bind(statement, 1, new Object());
+    }
+
+    @Test
+    public void jdbc_service_should_bind_arguments_through_configured_binders() throws Exception {
+        final JDBCDataSource dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTable(dataSource);
+        final JdbcService jdbcService = new JdbcService(
+                new ConnectionManager(dataSource),
+                JdbcServiceConfig.defaults().withArgumentBinders(
+                        ArgumentBinders.defaults().with(Sigil.class, (stmt, index, value) ->
+                                stmt.setString(index, value.describe())
+                        )
+                )
+        );
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 1, new Direwolf());
+        final Optional<String> name = jdbcService.queryForSingle(
+                "SELECT * FROM customer WHERE id = ? AND name IS NOT NULL",
+                new MapCustomer(),
+                1
+        );
+        assertEquals(Optional.of("Direwolf"), name);
+        assertEquals(
+                (Integer)0,
+                jdbcService.update("UPDATE customer SET name = ? WHERE id = ? AND name = ?", "Ghost", 1, null)
+        );
+    }
+
+    @Test
+    public void collection_with_registered_binder_should_be_bound_instead_of_expanded() throws Exception {
+        final JDBCDataSource dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTable(dataSource);
+        final JdbcService jdbcService = new JdbcService(
+                new ConnectionManager(dataSource),
+                JdbcServiceConfig.defaults().withArgumentBinders(
+                        ArgumentBinders.defaults().with(List.class, (stmt, index, value) ->
+                                stmt.setArray(index, stmt.getConnection().createArrayOf("INTEGER", value.toArray()))
+                        )
+                )
+        );
+        for(int id = 1; id <= 3; id++) {
+            jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", id, "Customer " + id);
+        }
+        final List<String> names = jdbcService.queryForList(
+                "SELECT * FROM customer WHERE id IN (UNNEST(?)) ORDER BY id",
+                new MapCustomer(),
+                Arrays.asList(1, 3)
+        );
+        assertEquals(Arrays.asList("Customer 1", "Customer 3"), names);
+    }
+
+    @Test
+    public void only_collections_without_registered_collection_binder_should_be_expanded() {
+        final ArgumentBinders binders = ArgumentBinders.defaults()
+                .with(List.class, (stmt, index, value) -> stmt.setObject(index, value));
+        assertFalse(binders.isExpanded(Arrays.asList(1, 2)));
+        assertTrue(binders.isExpanded(new HashSet<>(Arrays.asList(1, 2))));
+        assertTrue(argumentBinders.isExpanded(Arrays.asList(1, 2)));
+        assertFalse(argumentBinders.isExpanded(1));
+    }
+
+    private enum House {
+        STARK,
+        LANNISTER {
+            @Override
+            public String toString() {
+                return "A Lannister always pays his debts";
+            }
+        }
+    }
+
+    private interface Sigil {
+        String describe();
+    }
+
+    private static class Direwolf implements Sigil {
+        @Override
+        public String describe() {
+            return "Direwolf";
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class AsyncJdbcServiceTest {
+
+    private ExecutorService executor;
+    private ConnectionManager connectionManager;
+    private JdbcService jdbcService;
+    private AsyncJdbcService asyncJdbcService;
+    private MapCustomer rowMapper = new MapCustomer();
+
+    @Before
+    public void setUp() throws Exception {
+        final JDBCDataSource dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTableAndInsertJonSnow(dataSource);
+        connectionManager = new ConnectionManager(dataSource);
+        jdbcService = new JdbcService(connectionManager);
+        executor = AsyncJdbcService.newBoundedExecutor(1);
+        asyncJdbcService = new AsyncJdbcService(jdbcService, executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void query_should_run_on_executor_thread() throws Exception {
+        final CompletableFuture<Optional<String>> future = asyncJdbcService.queryForSingle(
+                "SELECT * FROM customer WHERE id = ?",
+                result -> Thread.currentThread().getName() + ":" + rowMapper.mapRow(result),
+                1
+        );
+        assertEquals(Optional.of("jdbc-middleware-async-1:Jon Snow"), future.get());
+    }
+
+    @Test
+    public void insert_should_complete_when_row_is_inserted() throws Exception {
+        asyncJdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Arya Stark").get();
+        final List<String> names = asyncJdbcService.queryForList("SELECT * FROM customer ORDER BY id", rowMapper).get();
+        assertEquals(2, names.size());
+        assertEquals("Arya Stark", names.get(1));
+    }
+
+    @Test
+    public void failing_operation_should_complete_future_exceptionally() throws Exception {
+        final CompletableFuture<Void> future = asyncJdbcService.updateSingle("UPDATE customer SET name = ? WHERE id = ?", "Hodor", 42);
+        try {
+            future.get();
+        }
+        catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            return;
+        }
+        throw new AssertionError("Expected future to complete exceptionally");
+    }
+
+    @Test
+    public void operation_submitted_inside_transaction_should_join_transaction() {
+        final TransactionManager transactionManager = new TransactionManager(connectionManager);
+        try {
+            transactionManager.doInTransaction(() -> {
+                final CompletableFuture<Integer> future = asyncJdbcService.delete("DELETE FROM customer");
+                assertTrue(future.isDone());
+                assertEquals((Integer)1, future.join());
+                throw new RuntimeException();
+            });
+        }
+        catch(RuntimeException e) {
+            assertEquals(1, jdbcService.queryForList("SELECT * FROM customer", rowMapper).size());
+            return;
+        }
+        throw new AssertionError("Expected transaction to be rolled back");
+    }
+
+    @Test
+    public void transaction_should_run_and_commit_on_executor_thread() throws Exception {
+        final String name = asyncJdbcService.doInTransactionAsync(() -> {
+            jdbcService.updateSingle("UPDATE customer SET name = ? WHERE id = ?", "Lord Snow", 1);
+            return jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", rowMapper, 1).orElse(null);
+        }).get();
+        assertEquals("Lord Snow", name);
+        assertEquals(Optional.of("Lord Snow"), jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", rowMapper, 1));
+    }
+
+    @Test
+    public void transaction_with_options_should_apply_them_on_executor_thread() throws Exception {
+        final TransactionOptions readOnly = TransactionOptions.defaults().withReadOnly(true);
+        assertEquals(
+                Optional.of("Jon Snow"),
+                asyncJdbcService.doInTransactionAsync(readOnly, () ->
+                        jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", rowMapper, 1)
+                ).get()
+        );
+        final CompletableFuture<Integer> delete = asyncJdbcService.doInTransactionAsync(readOnly, () ->
+                jdbcService.delete("DELETE FROM customer")
+        );
+        try {
+            delete.get();
+            fail("Expected exception");
+        }
+        catch(ExecutionException expected) {
+        }
+        assertEquals(1, asyncJdbcService.queryForList("SELECT * FROM customer", rowMapper).get().size());
+    }
+
+    @Test
+    public void transactions_should_use_default_options_of_given_transaction_manager() throws Exception {
+        final AsyncJdbcService readOnlyService = new AsyncJdbcService(
+                jdbcService,
+                new TransactionManager(connectionManager, TransactionOptions.defaults().withReadOnly(true)),
+                executor
+        );
+        final CompletableFuture<Void> insert = readOnlyService.doInTransactionAsync(() ->
+                jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Arya Stark")
+        );
+        try {
+            insert.get();
+            fail("Expected exception");
+        }
+        catch(ExecutionException expected) {
+        }
+        assertEquals(1, asyncJdbcService.queryForList("SELECT * FROM customer", rowMapper).get().size());
+    }
+
+    @Test
+    public void failed_transaction_should_not_leave_transaction_on_executor_thread() throws Exception {
+        final CompletableFuture<Void> failed = asyncJdbcService.doInTransactionAsync(() -> {
+            jdbcService.delete("DELETE FROM customer");
+            throw new IllegalStateException();
+        });
+        try {
+            failed.get();
+        }
+        catch(ExecutionException ignored) {
+        }
+        final boolean transactionInProgress = CompletableFuture
+                .supplyAsync(connectionManager::isTransactionInProgress, executor)
+                .get();
+        assertFalse(transactionInProgress);
+        assertEquals(1, asyncJdbcService.queryForList("SELECT * FROM customer", rowMapper).get().size());
+    }
+
+    @Test
+    public void ordered_partitioned_query_should_return_rows_in_key_order() throws Exception {
+        insertCustomers(2, 100);
+        final List<Integer> ids = asyncJdbcService.queryForListPartitioned(
+                "SELECT * FROM customer WHERE id >= ? AND id < ? ORDER BY id",
+                result -> result.requireInt("id"),
+                1,
+                101,
+                4,
+                true
+        ).get();
+        assertEquals(100, ids.size());
+        for(int i = 0; i < ids.size(); i++) {
+            assertEquals((Integer)(i + 1), ids.get(i));
+        }
+    }
+
+    @Test
+    public void unordered_partitioned_query_should_return_every_matching_row() throws Exception {
+        insertCustomers(2, 50);
+        final List<Integer> ids = asyncJdbcService.queryForListPartitioned(
+                "SELECT * FROM customer WHERE id >= ? AND id < ? AND name <> ?",
+                result -> result.requireInt("id"),
+                0,
+                1000,
+                3,
+                false,
+                "Jon Snow"
+        ).get();
+        assertEquals(49, ids.size());
+        assertEquals(49, new HashSet<>(ids).size());
+        assertFalse(ids.contains(1));
+    }
+
+    @Test
+    public void partitioned_query_inside_transaction_should_see_uncommitted_rows() {
+        final TransactionManager transactionManager = new TransactionManager(connectionManager);
+        final List<String> names = transactionManager.doInTransaction(() -> {
+            jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Ghost");
+            return asyncJdbcService.queryForListPartitioned(
+                    "SELECT * FROM customer WHERE id >= ? AND id < ? ORDER BY id", rowMapper, 1, 3, 2, true
+            ).join();
+        });
+        assertEquals(Arrays.asList("Jon Snow", "Ghost"), names);
+    }
+
+    @Test
+    public void partition_should_split_range_into_contiguous_partitions() {
+        assertArrayEquals(new long[] {0, 4, 7, 10}, AsyncJdbcService.partition(0, 10, 3));
+        assertArrayEquals(new long[] {5, 6, 7}, AsyncJdbcService.partition(5, 7, 8));
+        assertArrayEquals(new long[] {5, 5}, AsyncJdbcService.partition(5, 5, 8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partitioned_query_with_inverted_range_should_throw_expected_exception() {
+        asyncJdbcService.queryForListPartitioned("SELECT * FROM customer WHERE id >= ? AND id < ?", rowMapper, 10, 0, 2, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bounded_executor_without_threads_should_throw_expected_exception() {
+        AsyncJdbcService.newBoundedExecutor(0);
+    }
+
+    private void insertCustomers(int fromId, int toId) {
+        final List<Object[]> rows = new ArrayList<>();
+        for(int id = fromId; id <= toId; id++) {
+            rows.add(new Object[] {id, "Customer " + id});
+        }
+        jdbcService.batchInsert("INSERT INTO customer (id, name) VALUES (?, ?)", rows, 100);
+    }
+}
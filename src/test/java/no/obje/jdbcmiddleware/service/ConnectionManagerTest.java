@@ -1,5 +1,6 @@
 package no.obje.jdbcmiddleware.service;
 
+import no.obje.jdbcmiddleware.exception.TransactionTimeoutException;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -7,7 +8,11 @@ import javax.sql.DataSource;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class ConnectionManagerTest {
@@ -62,4 +67,96 @@ public class ConnectionManagerTest {
         verify(connection, times(1)).rollback();
         verify(connection, times(1)).close();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void releasing_an_acquired_connection_outside_of_a_transaction_should_close_it() throws SQLException {
+        final Connection acquired = connectionManager.acquireConnection();
+        connectionManager.releaseConnection(acquired);
+        verify(dataSource, times(1)).getConnection();
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void releasing_an_acquired_connection_inside_of_a_transaction_should_leave_it_open() throws SQLException {
+        connectionManager.startTransaction();
+        final Connection acquired = connectionManager.acquireConnection();
+        connectionManager.releaseConnection(acquired);
+        verify(dataSource, times(1)).getConnection();
+        verify(connection, never()).close();
+    }
+
+    @Test
+    public void starting_a_lazy_transaction_should_not_get_a_connection() throws SQLException {
+        connectionManager.startTransaction(TransactionOptions.defaults().withLazyConnection(true));
+        verify(dataSource, never()).getConnection();
+        assertTrue(connectionManager.isTransactionInProgress());
+    }
+
+    @Test
+    public void lazy_transaction_should_get_a_connection_when_first_needed() throws SQLException {
+        connectionManager.startTransaction(TransactionOptions.defaults().withLazyConnection(true));
+        connectionManager.doWithConnection(c -> c);
+        final Connection acquired = connectionManager.acquireConnection();
+        connectionManager.releaseConnection(acquired);
+        verify(dataSource, times(1)).getConnection();
+        verify(connection, times(1)).setAutoCommit(false);
+        verify(connection, never()).close();
+        connectionManager.commitTransaction();
+        verify(connection, times(1)).commit();
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void committing_a_lazy_transaction_without_connection_should_do_nothing() throws SQLException {
+        connectionManager.startTransaction(TransactionOptions.defaults().withLazyConnection(true));
+        connectionManager.commitTransaction();
+        verify(dataSource, never()).getConnection();
+        assertFalse(connectionManager.isTransactionInProgress());
+    }
+
+    @Test
+    public void rolling_back_a_lazy_transaction_without_connection_should_do_nothing() throws SQLException {
+        connectionManager.startTransaction(TransactionOptions.defaults().withLazyConnection(true));
+        connectionManager.rollbackTransaction();
+        verify(dataSource, never()).getConnection();
+        assertFalse(connectionManager.isTransactionInProgress());
+    }
+
+    @Test
+    public void read_only_serializable_transaction_should_apply_and_reset_options() throws SQLException {
+        when(connection.getTransactionIsolation()).thenReturn(Connection.TRANSACTION_READ_COMMITTED);
+        connectionManager.startTransaction(TransactionOptions.defaults()
+                .withReadOnly(true)
+                .withIsolation(Isolation.SERIALIZABLE));
+        verify(connection, times(1)).setReadOnly(true);
+        verify(connection, times(1)).setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        connectionManager.commitTransaction();
+        verify(connection, times(1)).setReadOnly(false);
+        verify(connection, times(1)).setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void default_transaction_should_leave_read_only_mode_and_isolation_alone() throws SQLException {
+        connectionManager.startTransaction();
+        connectionManager.rollbackTransaction();
+        verify(connection, never()).setReadOnly(anyBoolean());
+        verify(connection, never()).setTransactionIsolation(anyInt());
+    }
+
+    @Test
+    public void transaction_with_timeout_should_have_remaining_time() {
+        assertEquals(Long.MAX_VALUE, connectionManager.getRemainingTransactionNanos());
+        connectionManager.startTransaction(TransactionOptions.defaults().withTimeout(Duration.ofSeconds(30)));
+        final long remainingNanos = connectionManager.getRemainingTransactionNanos();
+        assertTrue(remainingNanos > Duration.ofSeconds(29).toNanos() && remainingNanos <= Duration.ofSeconds(30).toNanos());
+    }
+
+    @Test(expected = TransactionTimeoutException.class)
+    public void transaction_past_its_timeout_should_throw_expected_exception() throws InterruptedException {
+        connectionManager.startTransaction(TransactionOptions.defaults().withTimeout(Duration.ofMillis(1)));
+        Thread.sleep(5);
+        connectionManager.getRemainingTransactionNanos();
+    }
+
+}
@@ -0,0 +1,107 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import no.obje.jdbcmiddleware.exception.MalformedSqlException;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class JdbcServiceBatchTest {
+
+    private JdbcService jdbcService;
+    private MapCustomer rowMapper = new MapCustomer();
+
+    @Before
+    public void setUp() throws Exception {
+        final JDBCDataSource dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTable(dataSource);
+        jdbcService = new JdbcService(dataSource);
+    }
+
+    @Test
+    public void batch_insert_should_insert_all_rows_across_chunks() {
+        final List<Object[]> rows = new ArrayList<>();
+        for(int i = 1; i <= 7; i++) {
+            rows.add(new Object[] {i, "Stark " + i});
+        }
+        final int[] updateCounts = jdbcService.batchInsert("INSERT INTO customer (id, name) VALUES (?, ?)", rows, 3);
+        assertArrayEquals(new int[] {1, 1, 1, 1, 1, 1, 1}, updateCounts);
+        assertEquals(7, jdbcService.queryForList("SELECT * FROM customer", rowMapper).size());
+    }
+
+    @Test
+    public void batch_update_should_return_update_count_of_every_row() {
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 1, "Bran Stark");
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Rickon Stark");
+        final int[] updateCounts = jdbcService.batchUpdate(
+                "UPDATE customer SET name = ? WHERE id = ?",
+                Arrays.asList(new Object[] {"Hodor", 1}, new Object[] {"Osha", 3}, new Object[] {"Meera Reed", 2}),
+                2
+        );
+        assertArrayEquals(new int[] {1, 0, 1}, updateCounts);
+    }
+
+    @Test
+    public void batch_update_with_non_collection_iterable_should_return_update_count_of_every_row() {
+        final Iterable<Object[]> rows = () -> Arrays.asList(new Object[] {1, "Jojen Reed"}, new Object[] {2, "Hodor"}).iterator();
+        final int[] updateCounts = jdbcService.batchInsert("INSERT INTO customer (id, name) VALUES (?, ?)", rows, 1);
+        assertArrayEquals(new int[] {1, 1}, updateCounts);
+    }
+
+    @Test
+    public void batch_with_non_collection_iterable_and_huge_chunk_size_should_run_as_single_chunk() {
+        final List<Object[]> rows = new ArrayList<>();
+        for(int i = 1; i <= 2000; i++) {
+            rows.add(new Object[] {i, "Wildling " + i});
+        }
+        final Iterable<Object[]> iterable = rows::iterator;
+        final int[] updateCounts = jdbcService.batchInsert(
+                "INSERT INTO customer (id, name) VALUES (?, ?)",
+                iterable,
+                Integer.MAX_VALUE
+        );
+        assertEquals(2000, updateCounts.length);
+        assertEquals(1, updateCounts[1999]);
+        assertEquals(2000, jdbcService.queryForList("SELECT * FROM customer", rowMapper).size());
+    }
+
+    @Test
+    public void batch_delete_should_delete_given_rows() {
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 1, "Ygritte");
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Mance Rayder");
+        jdbcService.batchDelete("DELETE FROM customer WHERE id = ?", Arrays.asList(new Object[] {1}, new Object[] {2}), 10);
+        assertTrue(jdbcService.queryForList("SELECT * FROM customer", rowMapper).isEmpty());
+    }
+
+    @Test
+    public void batch_update_without_rows_should_return_no_update_counts() {
+        final int[] updateCounts = jdbcService.batchUpdate("DELETE FROM customer WHERE id = ?", Collections.emptyList(), 10);
+        assertEquals(0, updateCounts.length);
+    }
+
+    @Test(expected = MalformedSqlException.class)
+    public void batch_update_with_malformed_sql_should_throw_expected_exception() {
+        jdbcService.batchUpdate("asd", Collections.singletonList(new Object[] {1}), 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batch_update_with_non_positive_chunk_size_should_throw_expected_exception() {
+        jdbcService.batchUpdate("DELETE FROM customer WHERE id = ?", Collections.singletonList(new Object[] {1}), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batch_update_with_null_rows_should_throw_expected_exception() {
+        jdbcService.batchUpdate("DELETE FROM customer WHERE id = ?", null, 10);
+    }
+
+}
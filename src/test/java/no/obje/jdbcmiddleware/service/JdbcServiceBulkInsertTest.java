@@ -0,0 +1,150 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import no.obje.jdbcmiddleware.metrics.QueryEvent;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class JdbcServiceBulkInsertTest {
+
+    private static final String INSERT_CUSTOMER = "INSERT INTO customer (id, name) VALUES (?, ?)";
+
+    private JDBCDataSource dataSource;
+    private final List<QueryEvent> events = new ArrayList<>();
+    private JdbcService jdbcService;
+    private MapCustomer rowMapper = new MapCustomer();
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTable(dataSource);
+        jdbcService = new JdbcService(new ConnectionManager(dataSource, new QueryEventCollector()));
+    }
+
+    @Test
+    public void bulk_insert_should_insert_rows_in_largest_buckets_first() {
+        final int inserted = jdbcService.bulkInsert(INSERT_CUSTOMER, customers(256 + 64 + 2 * 16 + 5));
+        assertEquals(357, inserted);
+        assertEquals(4, events.size());
+        assertEquals(256, events.get(0).getRowCount());
+        assertEquals(64, events.get(1).getRowCount());
+        assertEquals(32, events.get(2).getRowCount());
+        assertEquals(5, events.get(3).getRowCount());
+        assertEquals(INSERT_CUSTOMER, events.get(3).getSql());
+        assertEquals(357, jdbcService.queryForList("SELECT * FROM customer", rowMapper).size());
+    }
+
+    @Test
+    public void bulk_insert_should_keep_row_order() {
+        jdbcService.bulkInsert(INSERT_CUSTOMER, customers(20));
+        final List<String> names = jdbcService.queryForList("SELECT * FROM customer ORDER BY id", rowMapper);
+        assertEquals("Customer 1", names.get(0));
+        assertEquals("Customer 20", names.get(19));
+    }
+
+    @Test
+    public void bulk_insert_should_respect_max_statement_parameters() {
+        final JdbcService limited = new JdbcService(
+                new ConnectionManager(dataSource, new QueryEventCollector()),
+                JdbcServiceConfig.defaults().withMaxStatementParameters(100)
+        );
+        assertEquals(300, limited.bulkInsert(INSERT_CUSTOMER, customers(300)));
+        assertEquals(2, events.size());
+        assertEquals(16 * 18, events.get(0).getRowCount());
+        assertEquals(12, events.get(1).getRowCount());
+    }
+
+    @Test
+    public void bulk_insert_with_non_collection_iterable_should_insert_all_rows() {
+        final List<Object[]> rows = customers(100);
+        assertEquals(100, jdbcService.bulkInsert(INSERT_CUSTOMER, rows::iterator));
+        assertEquals(100, jdbcService.queryForList("SELECT * FROM customer", rowMapper).size());
+    }
+
+    @Test
+    public void bulk_insert_without_rows_should_not_execute_any_statement() {
+        assertEquals(0, jdbcService.bulkInsert(INSERT_CUSTOMER, Collections.emptyList()));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void bulk_insert_should_rewrite_rows_containing_literals() {
+        jdbcService.bulkInsert("INSERT INTO customer (id, name) VALUES (?, CONCAT('?', ?));", customers(17));
+        assertEquals("?Customer 17", jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", rowMapper, 17).get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulk_insert_with_non_insert_statement_should_throw_expected_exception() {
+        jdbcService.bulkInsert("UPDATE customer SET name = ?", customers(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulk_insert_with_wrong_number_of_arguments_should_throw_expected_exception() {
+        jdbcService.bulkInsert(INSERT_CUSTOMER, Arrays.asList(new Object[16][1]));
+    }
+
+    @Test
+    public void bulk_insert_sql_should_repeat_row_for_bucket() {
+        final BulkInsertSql bulkInsertSql = BulkInsertSql.parse("insert into customer (id, name) values (?, ?)");
+        assertEquals(2, bulkInsertSql.getRowWidth());
+        assertTrue(bulkInsertSql.getSql(2).endsWith("values (?, ?),(?, ?),(?, ?),(?, ?),(?, ?),(?, ?),(?, ?),(?, ?),"
+                + "(?, ?),(?, ?),(?, ?),(?, ?),(?, ?),(?, ?),(?, ?),(?, ?)"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulk_insert_sql_with_values_function_in_trailing_clause_should_throw_expected_exception() {
+        BulkInsertSql.parse("INSERT INTO t (a, b) VALUES (?, ?) ON DUPLICATE KEY UPDATE b = VALUES(b)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulk_insert_sql_with_trailing_clause_should_throw_expected_exception() {
+        BulkInsertSql.parse("INSERT INTO customer (id, name) VALUES (?, ?) RETURNING id");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulk_insert_sql_with_multiple_rows_should_throw_expected_exception() {
+        BulkInsertSql.parse("INSERT INTO customer (id, name) VALUES (?, ?), (?, ?)");
+    }
+
+    @Test
+    public void bulk_insert_sql_should_use_first_top_level_values_row() {
+        final BulkInsertSql bulkInsertSql = BulkInsertSql.parse(
+                "INSERT INTO \"values\" (id, name) /* VALUES (?) */ VALUES (?, coalesce(?, 'VALUES (?)')); -- done"
+        );
+        assertEquals(2, bulkInsertSql.getRowWidth());
+        assertTrue(bulkInsertSql.getSql(2).endsWith("')),(?, coalesce(?, 'VALUES (?)'))"));
+    }
+
+    @Test
+    public void bulk_insert_sql_should_not_count_placeholders_in_quoted_identifiers_or_comments() {
+        final BulkInsertSql bulkInsertSql = BulkInsertSql.parse(
+                "INSERT INTO customer (id, \"name?\") VALUES (?, /* ? */ \"?\" || ? -- ?\n)"
+        );
+        assertEquals(2, bulkInsertSql.getRowWidth());
+    }
+
+    private static List<Object[]> customers(int count) {
+        final List<Object[]> rows = new ArrayList<>();
+        for(int i = 1; i <= count; i++) {
+            rows.add(new Object[] {i, "Customer " + i});
+        }
+        return rows;
+    }
+
+    private class QueryEventCollector implements no.obje.jdbcmiddleware.metrics.QueryListener {
+        @Override
+        public void queryExecuted(QueryEvent event) {
+            events.add(event);
+        }
+    }
+}
@@ -6,9 +6,12 @@ import org.hsqldb.jdbc.JDBCDataSource;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -85,4 +88,35 @@ public class JdbcServiceInsertTest {
         jdbcService.insertAndReturnKey("INSERT INTO customer (name) VALUES (?)", null, "Tywin Lannister");
     }
 
+    @Test
+    public void insert_all_should_return_generated_key_of_every_row_in_order() {
+        jdbcService.insert("INSERT INTO customer (name) VALUES (?)", "Jaime Lannister");
+        final long[] keys = jdbcService.insertAllAndReturnKeys(
+                "INSERT INTO customer (name) VALUES (?)",
+                "id",
+                Arrays.asList(new Object[] {"Brienne of Tarth"}, new Object[] {"Podrick Payne"}, new Object[] {"Bronn"})
+        );
+        assertArrayEquals(new long[] {2L, 3L, 4L}, keys);
+        assertEquals(Optional.of("Podrick Payne"), jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", rowMapper, keys[1]));
+    }
+
+    @Test
+    public void insert_all_without_rows_should_return_no_keys() {
+        assertEquals(0, jdbcService.insertAllAndReturnKeys("INSERT INTO customer (name) VALUES (?)", "id", Collections.emptyList()).length);
+    }
+
+    @Test(expected = MalformedSqlException.class)
+    public void insert_all_where_key_column_does_not_exist_should_throw_expected_exception() {
+        jdbcService.insertAllAndReturnKeys(
+                "INSERT INTO customer (name) VALUES (?)",
+                "key",
+                Collections.singletonList(new Object[] {"Tywin Lannister"})
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insert_all_with_null_rows_should_throw_expected_exception() {
+        jdbcService.insertAllAndReturnKeys("INSERT INTO customer (name) VALUES (?)", "id", null);
+    }
+
 }
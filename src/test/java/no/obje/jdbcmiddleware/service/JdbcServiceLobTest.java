@@ -0,0 +1,161 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class JdbcServiceLobTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JdbcService jdbcService;
+
+    @Before
+    public void setUp() throws Exception {
+        final JDBCDataSource dataSource = HsqlUtil.setupDataSource();
+        try(Statement statement = dataSource.getConnection().createStatement()) {
+            statement.execute("CREATE TABLE document (id INTEGER PRIMARY KEY, content BLOB, text CLOB)");
+        }
+        jdbcService = new JdbcService(dataSource);
+    }
+
+    @Test
+    public void file_argument_should_be_streamed_and_transferred_back_to_channel() throws IOException {
+        final byte[] content = new byte[200_000];
+        new Random(42).nextBytes(content);
+        final Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, content);
+        jdbcService.insert("INSERT INTO document (id, content) VALUES (?, ?)", 1, file);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Optional<Long> transferred = jdbcService.queryForSingle(
+                "SELECT content FROM document WHERE id = ?",
+                queryResult -> queryResult.transferTo("content", Channels.newChannel(out)),
+                1
+        );
+        assertEquals(Long.valueOf(content.length), transferred.orElse(null));
+        assertArrayEquals(content, out.toByteArray());
+    }
+
+    @Test
+    public void input_stream_argument_should_be_read_back_as_binary_stream() {
+        final byte[] content = "Winter is coming".getBytes();
+        jdbcService.insert("INSERT INTO document (id, content) VALUES (?, ?)", 1, new ByteArrayInputStream(content));
+        final Optional<byte[]> result = jdbcService.queryForSingle(
+                "SELECT content FROM document WHERE id = ?",
+                queryResult -> queryResult.getBinaryStream("content").map(in -> {
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[4];
+                    try {
+                        int read;
+                        while((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                    catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return out.toByteArray();
+                }).orElse(null),
+                1
+        );
+        assertArrayEquals(content, result.orElse(null));
+    }
+
+    @Test
+    public void reader_argument_should_be_read_back_as_character_stream() {
+        jdbcService.insert("INSERT INTO document (id, text) VALUES (?, ?)", 1, new StringReader("The North remembers"));
+        final Optional<String> result = jdbcService.queryForSingle(
+                "SELECT text FROM document WHERE id = ?",
+                queryResult -> queryResult.getCharacterStream("text")
+                        .map(reader -> new BufferedReader(reader).lines().collect(Collectors.joining("\n")))
+                        .orElse(null),
+                1
+        );
+        assertEquals("The North remembers", result.orElse(null));
+    }
+
+    @Test
+    public void null_lob_should_not_be_transferred() {
+        jdbcService.insert("INSERT INTO document (id) VALUES (?)", 1);
+        final Optional<Long> transferred = jdbcService.queryForSingle(
+                "SELECT content FROM document WHERE id = ?",
+                queryResult -> queryResult.transferTo("content", Channels.newChannel(new ByteArrayOutputStream())),
+                1
+        );
+        assertEquals(Long.valueOf(-1), transferred.orElse(null));
+    }
+
+    @Test
+    public void file_argument_should_be_closed_once_read() throws IOException {
+        final Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, Arrays.asList("Hodor", "Hodor"));
+        final PathInputStream in = new PathInputStream(file, Files.size(file));
+        final byte[] buffer = new byte[(int)Files.size(file)];
+        assertEquals(buffer.length, in.read(buffer));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void file_argument_partly_read_by_failing_statement_should_be_closed() throws Exception {
+        final Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, Arrays.asList("Hodor", "Hodor"));
+        final AtomicReference<InputStream> boundStream = new AtomicReference<>();
+        final PreparedStatement statement = mock(PreparedStatement.class);
+        doAnswer(invocation -> {
+            final InputStream in = (InputStream)invocation.getArguments()[1];
+            in.read();
+            boundStream.set(in);
+            return null;
+        }).when(statement).setBinaryStream(anyInt(), any(InputStream.class), anyLong());
+        when(statement.executeUpdate()).thenThrow(new SQLException("Disk full", "53100"));
+        final Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        final DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        try {
+            new JdbcService(dataSource).insert("INSERT INTO document (id, content) VALUES (?, ?)", 1, file);
+            fail("Expected exception");
+        }
+        catch(RuntimeException expected) {
+        }
+        assertEquals(-1, boundStream.get().read());
+    }
+
+}
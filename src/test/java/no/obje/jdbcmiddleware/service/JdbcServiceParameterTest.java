@@ -0,0 +1,153 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import no.obje.jdbcmiddleware.domain.ParameterSource;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class JdbcServiceParameterTest {
+
+    private JDBCDataSource dataSource;
+    private JdbcService jdbcService;
+    private MapCustomer rowMapper = new MapCustomer();
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTableAndInsertJonSnow(dataSource);
+        jdbcService = new JdbcService(dataSource);
+    }
+
+    @Test
+    public void insert_with_bean_parameters_should_insert_given_row() {
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (:id, :name)", ParameterSource.ofBean(new Customer(2, "Sansa Stark")));
+        assertEquals(Optional.of("Sansa Stark"), jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", rowMapper, 2));
+    }
+
+    @Test
+    public void query_with_map_parameters_should_return_matching_rows() {
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", 1);
+        final Optional<String> name = jdbcService.queryForSingle("SELECT * FROM customer WHERE id = :id", rowMapper, ParameterSource.of(parameters));
+        assertEquals(Optional.of("Jon Snow"), name);
+    }
+
+    @Test
+    public void query_with_collection_parameter_should_expand_in_list() {
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Arya Stark");
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 3, "Bran Stark");
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("ids", Arrays.asList(1, 3));
+        final List<String> names = jdbcService.queryForList(
+                "SELECT * FROM customer WHERE id IN (:ids) ORDER BY id",
+                rowMapper,
+                ParameterSource.of(parameters)
+        );
+        assertEquals(Arrays.asList("Jon Snow", "Bran Stark"), names);
+    }
+
+    @Test
+    public void update_with_repeated_parameter_should_bind_every_occurrence() {
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", 1);
+        parameters.put("name", "Lord Snow");
+        final Integer updated = jdbcService.update(
+                "UPDATE customer SET name = :name WHERE id = :id AND id >= :id",
+                ParameterSource.of(parameters)
+        );
+        assertEquals((Integer)1, updated);
+        assertEquals(Optional.of("Lord Snow"), jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", rowMapper, 1));
+    }
+
+    @Test
+    public void query_with_collection_argument_should_expand_in_list() {
+        insertCustomers(2, 10);
+        final List<String> names = jdbcService.queryForList(
+                "SELECT * FROM customer WHERE id IN (?) ORDER BY id",
+                rowMapper,
+                Arrays.asList(1, 4, 9)
+        );
+        assertEquals(Arrays.asList("Jon Snow", "Customer 4", "Customer 9"), names);
+    }
+
+    @Test
+    public void collection_argument_over_parameter_limit_should_run_in_chunks() {
+        insertCustomers(2, 40);
+        final JdbcService limited = new JdbcService(
+                new ConnectionManager(dataSource),
+                JdbcServiceConfig.defaults().withMaxStatementParameters(8)
+        );
+        final List<Integer> ids = new ArrayList<>();
+        for(int id = 1; id <= 30; id += 2) {
+            ids.add(id);
+        }
+        final List<String> names = limited.queryForList("SELECT * FROM customer WHERE id IN (?) ORDER BY id", rowMapper, ids);
+        assertEquals(15, names.size());
+        assertEquals("Customer 29", names.get(14));
+        assertEquals((Integer)15, limited.delete("DELETE FROM customer WHERE name <> ? AND id IN (?)", "Nobody", ids));
+    }
+
+    @Test
+    public void update_single_with_collection_argument_should_check_total_rows_affected() {
+        jdbcService.updateSingle("UPDATE customer SET name = ? WHERE id IN (?)", "Lord Snow", Arrays.asList(1, 2, 3));
+        assertEquals(Optional.of("Lord Snow"), jdbcService.queryForSingle("SELECT * FROM customer WHERE id IN (?)", rowMapper, Arrays.asList(3, 1)));
+    }
+
+    @Test
+    public void update_single_with_collection_argument_over_parameter_limit_should_be_rejected_before_updating() {
+        insertCustomers(2, 20);
+        final JdbcService limited = new JdbcService(
+                new ConnectionManager(dataSource),
+                JdbcServiceConfig.defaults().withMaxStatementParameters(8)
+        );
+        try {
+            limited.updateSingle("UPDATE customer SET name = ? WHERE id IN (?)", "Lord Snow", Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+            fail("Expected exception");
+        }
+        catch(IllegalArgumentException expected) {
+        }
+        assertEquals(Optional.of("Jon Snow"), jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", rowMapper, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void query_with_missing_parameter_should_throw_expected_exception() {
+        jdbcService.queryForList("SELECT * FROM customer WHERE id = :id", rowMapper, ParameterSource.ofBean(new Object()));
+    }
+
+    private void insertCustomers(int fromId, int toId) {
+        for(int id = fromId; id <= toId; id++) {
+            jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", id, "Customer " + id);
+        }
+    }
+
+    public static class Customer {
+
+        private final int id;
+        private final String name;
+
+        Customer(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -53,6 +53,15 @@ public class JdbcServiceQueryForSingleTest {
         jdbcService.queryForSingle("SELECT id, name, age FROM customer WHERE id = ?", rowMapper, 1);
     }
 
+    @Test
+    public void is_null_should_check_numeric_columns() {
+        final Optional<Boolean> nullChecks = jdbcService.queryForSingle(
+                "SELECT CAST(NULL AS NUMERIC(10, 2)) AS balance, CAST(12.50 AS NUMERIC(10, 2)) AS amount FROM customer",
+                queryResult -> queryResult.isNull("balance") && !queryResult.isNull("amount") && !queryResult.isNull(2)
+        );
+        assertEquals(Optional.of(true), nullChecks);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void query_for_single_with_null_sql_should_throw_expected_exception() {
         jdbcService.queryForSingle(null, rowMapper);
@@ -0,0 +1,89 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import no.obje.jdbcmiddleware.exception.MalformedSqlException;
+import no.obje.jdbcmiddleware.metrics.QueryEvent;
+import no.obje.jdbcmiddleware.metrics.QueryListener;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class JdbcServiceQueryListenerTest {
+
+    private final List<QueryEvent> events = new ArrayList<>();
+    private final List<Long> acquisitions = new ArrayList<>();
+    private JdbcService jdbcService;
+    private MapCustomer rowMapper = new MapCustomer();
+
+    @Before
+    public void setUp() throws Exception {
+        final JDBCDataSource dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTableAndInsertJonSnow(dataSource);
+        jdbcService = new JdbcService(new ConnectionManager(dataSource, new QueryListener() {
+            @Override
+            public void connectionAcquired(long acquireNanos) {
+                acquisitions.add(acquireNanos);
+            }
+
+            @Override
+            public void queryExecuted(QueryEvent event) {
+                events.add(event);
+            }
+        }));
+    }
+
+    @Test
+    public void query_should_publish_event_with_sql_and_row_count() {
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Arya Stark");
+        jdbcService.queryForList("SELECT * FROM customer", rowMapper);
+
+        assertEquals(2, events.size());
+        assertEquals(2, acquisitions.size());
+        final QueryEvent event = events.get(1);
+        assertEquals("SELECT * FROM customer", event.getSql());
+        assertEquals(2, event.getRowCount());
+        assertTrue(event.isSuccessful());
+        assertTrue(event.getPrepareNanos() >= 0 && event.getExecuteNanos() >= 0 && event.getMapNanos() >= 0);
+        assertEquals(event.getPrepareNanos() + event.getExecuteNanos() + event.getMapNanos(), event.getTotalNanos());
+    }
+
+    @Test
+    public void update_should_publish_event_with_number_of_affected_rows() {
+        jdbcService.update("UPDATE customer SET name = ?", "Ghost");
+        assertEquals(1, events.get(0).getRowCount());
+        assertEquals(0L, events.get(0).getMapNanos());
+    }
+
+    @Test
+    public void closing_a_stream_should_publish_event_with_rows_read() {
+        try(Stream<String> names = jdbcService.queryForStream("SELECT * FROM customer", rowMapper)) {
+            assertEquals(1, names.count());
+        }
+        assertEquals(1, events.size());
+        assertEquals(1, events.get(0).getRowCount());
+    }
+
+    @Test
+    public void failing_statement_should_publish_event_with_failure() {
+        try {
+            jdbcService.queryForList("SELECT * FROM doesnotexist", rowMapper);
+        }
+        catch(MalformedSqlException e) {
+            assertEquals(1, events.size());
+            assertFalse(events.get(0).isSuccessful());
+            assertTrue(events.get(0).getFailure().isPresent());
+            return;
+        }
+        throw new AssertionError("Expected exception was not thrown");
+    }
+
+}
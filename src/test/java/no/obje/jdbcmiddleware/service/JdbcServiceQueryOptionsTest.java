@@ -0,0 +1,113 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class JdbcServiceQueryOptionsTest {
+
+    private JdbcService jdbcService;
+    private MapCustomer mapCustomer = new MapCustomer();
+
+    @Before
+    public void setUp() throws Exception {
+        final JDBCDataSource dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTable(dataSource);
+        jdbcService = new JdbcService(dataSource);
+        jdbcService.batchInsert(
+                "INSERT INTO customer (id, name) VALUES (?, ?)",
+                Arrays.asList(new Object[] {1, "Jon Snow"}, new Object[] {2, "Arya Stark"}, new Object[] {3, "Bran Stark"}),
+                10
+        );
+    }
+
+    @Test
+    public void query_for_list_with_max_rows_should_read_at_most_max_rows() {
+        final List<String> result = jdbcService.queryForList(
+                "SELECT * FROM customer ORDER BY id",
+                QueryOptions.defaults().withMaxRows(2),
+                mapCustomer
+        );
+        assertEquals(Arrays.asList("Jon Snow", "Arya Stark"), result);
+    }
+
+    @Test
+    public void query_for_single_with_scrollable_result_set_should_return_first_row() {
+        final String result = jdbcService.queryForSingle(
+                "SELECT * FROM customer WHERE id = ?",
+                QueryOptions.defaults().withResultSetType(ResultSet.TYPE_SCROLL_INSENSITIVE).withFetchSize(10),
+                mapCustomer,
+                2
+        ).orElse(null);
+        assertEquals("Arya Stark", result);
+    }
+
+    @Test
+    public void query_for_stream_with_options_should_stream_every_row() {
+        try(Stream<String> names = jdbcService.queryForStream(
+                "SELECT * FROM customer WHERE id IN (?) ORDER BY id",
+                QueryOptions.defaults().withFetchSize(1).withHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT),
+                mapCustomer,
+                Arrays.asList(1, 3)
+        )) {
+            assertEquals(Arrays.asList("Jon Snow", "Bran Stark"), names.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void options_should_be_applied_to_statement_before_execution() throws SQLException {
+        final DataSource dataSource = mock(DataSource.class);
+        final Connection connection = mock(Connection.class);
+        final PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(
+                anyString(),
+                eq(ResultSet.TYPE_SCROLL_INSENSITIVE),
+                eq(ResultSet.CONCUR_READ_ONLY),
+                eq(ResultSet.HOLD_CURSORS_OVER_COMMIT)
+        )).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+        new JdbcService(dataSource).forEachRow(
+                "SELECT * FROM customer",
+                QueryOptions.defaults()
+                        .withFetchSize(500)
+                        .withMaxRows(1000)
+                        .withResultSetType(ResultSet.TYPE_SCROLL_INSENSITIVE)
+                        .withFetchDirection(ResultSet.FETCH_REVERSE)
+                        .withHoldability(ResultSet.HOLD_CURSORS_OVER_COMMIT),
+                queryResult -> { }
+        );
+        final InOrder inOrder = inOrder(statement);
+        inOrder.verify(statement).setFetchSize(500);
+        inOrder.verify(statement).setMaxRows(1000);
+        inOrder.verify(statement).setFetchDirection(ResultSet.FETCH_REVERSE);
+        inOrder.verify(statement).executeQuery();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknown_result_set_type_should_throw_expected_exception() {
+        QueryOptions.defaults().withResultSetType(42);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative_max_rows_should_throw_expected_exception() {
+        QueryOptions.defaults().withMaxRows(-1);
+    }
+
+}
@@ -0,0 +1,144 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.exception.QueryTimeoutException;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class JdbcServiceQueryTimeoutTest {
+
+    private Connection connection;
+    private PreparedStatement statement;
+    private ConnectionManager connectionManager;
+    private CountDownLatch cancelled;
+
+    @Before
+    public void setUp() throws SQLException {
+        final DataSource dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        cancelled = new CountDownLatch(1);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenAnswer(invocation -> {
+            if(!cancelled.await(10, TimeUnit.SECONDS)) {
+                return mock(ResultSet.class);
+            }
+            throw new SQLException("canceling statement due to user request", "57014");
+        });
+        doAnswer(invocation -> {
+            cancelled.countDown();
+            return null;
+        }).when(statement).cancel();
+        connectionManager = new ConnectionManager(dataSource);
+    }
+
+    @Test
+    public void statement_running_past_default_query_timeout_should_be_cancelled() throws SQLException {
+        final JdbcService jdbcService = new JdbcService(
+                connectionManager,
+                JdbcServiceConfig.defaults().withQueryTimeout(Duration.ofMillis(50))
+        );
+        assertTimesOut(jdbcService);
+        verify(statement, times(1)).setQueryTimeout(1);
+    }
+
+    @Test
+    public void statement_running_past_query_timeout_of_call_should_be_cancelled() throws SQLException {
+        assertTimesOut(new JdbcService(connectionManager).withQueryTimeout(Duration.ofMillis(50)));
+    }
+
+    @Test
+    public void statement_running_past_transaction_timeout_should_be_cancelled() throws SQLException {
+        final JdbcService jdbcService = new JdbcService(connectionManager);
+        connectionManager.startTransaction(TransactionOptions.defaults().withTimeout(Duration.ofMillis(50)));
+        try {
+            assertTimesOut(jdbcService);
+        }
+        finally {
+            connectionManager.rollbackTransaction();
+        }
+    }
+
+    @Test
+    public void statement_without_timeout_should_not_be_given_query_timeout() throws SQLException {
+        doReturn(mock(ResultSet.class)).when(statement).executeQuery();
+        assertTrue(new JdbcService(connectionManager).queryForList("SELECT * FROM customer", new MapCustomer()).isEmpty());
+        verify(statement, never()).setQueryTimeout(anyInt());
+        verify(statement, never()).cancel();
+    }
+
+    @Test
+    public void slow_consumer_of_stream_should_not_have_statement_cancelled() throws Exception {
+        final ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+        when(resultSet.next()).thenReturn(true, true, false);
+        doReturn(resultSet).when(statement).executeQuery();
+        final JdbcService jdbcService = new JdbcService(connectionManager).withQueryTimeout(Duration.ofMillis(50));
+        try(Stream<Integer> rows = jdbcService.queryForStream("SELECT * FROM customer", result -> 1)) {
+            assertEquals(2, rows.mapToInt(row -> {
+                try {
+                    Thread.sleep(100);
+                }
+                catch(InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return row;
+            }).sum());
+        }
+        verify(statement, never()).cancel();
+    }
+
+    private void assertTimesOut(JdbcService jdbcService) throws SQLException {
+        try {
+            jdbcService.queryForList("SELECT * FROM customer", new MapCustomer());
+            fail("Expected statement to time out");
+        }
+        catch(QueryTimeoutException e) {
+            verify(statement, times(1)).cancel();
+        }
+    }
+
+    @Test
+    public void cached_statement_should_be_released_when_query_timeout_can_not_be_reset() throws SQLException {
+        final DataSource dataSource = mock(DataSource.class);
+        final Connection connection = mock(Connection.class);
+        final PreparedStatement cachedStatement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(cachedStatement);
+        when(cachedStatement.getConnection()).thenReturn(connection);
+        when(cachedStatement.executeQuery()).thenReturn(mock(ResultSet.class));
+        doThrow(new SQLException("Unable to reset query timeout")).when(cachedStatement).setQueryTimeout(0);
+        final StatementCache statementCache = new StatementCache(10);
+        final JdbcService jdbcService = new JdbcService(
+                new ConnectionManager(dataSource),
+                JdbcServiceConfig.defaults().withStatementCache(statementCache).withQueryTimeout(Duration.ofSeconds(5))
+        );
+        for(int i = 0; i < 2; i++) {
+            try {
+                jdbcService.queryForList("SELECT * FROM customer", new MapCustomer());
+                fail("Expected resetting the query timeout to fail");
+            }
+            catch(RuntimeException e) {
+                // expected
+            }
+        }
+        assertEquals(1, statementCache.getHitCount());
+    }
+
+}
@@ -0,0 +1,63 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class JdbcServiceStatementCacheTest {
+
+    private JdbcService jdbcService;
+    private TransactionManager transactionManager;
+    private StatementCache statementCache;
+    private MapCustomer rowMapper = new MapCustomer();
+
+    @Before
+    public void setUp() throws Exception {
+        final JDBCDataSource dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTableAndInsertJonSnow(dataSource);
+        final ConnectionManager connectionManager = new ConnectionManager(dataSource);
+        statementCache = new StatementCache(16);
+        transactionManager = new TransactionManager(connectionManager);
+        jdbcService = new JdbcService(connectionManager, JdbcServiceConfig.defaults().withStatementCache(statementCache));
+    }
+
+    @Test
+    public void repeated_statements_on_the_same_connection_should_reuse_prepared_statement() {
+        transactionManager.doInTransaction(() -> {
+            for(int i = 0; i < 3; i++) {
+                final Optional<String> name = jdbcService.queryForSingle("SELECT * FROM customer WHERE id = ?", rowMapper, 1);
+                assertTrue(name.isPresent());
+                assertEquals("Jon Snow", name.get());
+            }
+        });
+        assertEquals(1, statementCache.getMissCount());
+        assertEquals(2, statementCache.getHitCount());
+    }
+
+    @Test
+    public void cached_statements_should_be_usable_for_generated_keys_and_updates() {
+        transactionManager.doInTransaction(() -> {
+            assertEquals((Long)2L, jdbcService.insertAndReturnKey("INSERT INTO customer (name) VALUES (?)", "id", "Arya Stark"));
+            assertEquals((Long)3L, jdbcService.insertAndReturnKey("INSERT INTO customer (name) VALUES (?)", "id", "Sansa Stark"));
+            assertEquals((Integer)3, jdbcService.update("UPDATE customer SET name = ?", "Stark"));
+        });
+        assertEquals(3, jdbcService.queryForList("SELECT * FROM customer", rowMapper).size());
+        assertEquals(1, statementCache.getHitCount());
+    }
+
+    @Test
+    public void statements_should_not_be_reused_across_closed_connections() {
+        transactionManager.doInTransaction(() -> jdbcService.queryForList("SELECT * FROM customer", rowMapper));
+        transactionManager.doInTransaction(() -> jdbcService.queryForList("SELECT * FROM customer", rowMapper));
+        assertEquals(2, statementCache.getMissCount());
+        assertEquals(0, statementCache.getHitCount());
+    }
+
+}
@@ -0,0 +1,107 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import no.obje.jdbcmiddleware.exception.MalformedSqlException;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class JdbcServiceStreamTest {
+
+    private JdbcService jdbcService;
+    private TransactionManager transactionManager;
+    private MapCustomer rowMapper = new MapCustomer();
+
+    @Before
+    public void setUp() throws Exception {
+        final JDBCDataSource dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTableAndInsertJonSnow(dataSource);
+        final ConnectionManager connectionManager = new ConnectionManager(dataSource);
+        transactionManager = new TransactionManager(connectionManager);
+        jdbcService = new JdbcService(connectionManager);
+        jdbcService.batchInsert(
+                "INSERT INTO customer (id, name) VALUES (?, ?)",
+                Arrays.asList(new Object[] {2, "Arya Stark"}, new Object[] {3, "Sansa Stark"}),
+                10
+        );
+    }
+
+    @Test
+    public void query_for_stream_should_return_every_row() {
+        try(Stream<String> names = jdbcService.queryForStream("SELECT * FROM customer ORDER BY id", rowMapper)) {
+            assertEquals(Arrays.asList("Jon Snow", "Arya Stark", "Sansa Stark"), names.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void query_for_stream_should_bind_arguments_and_use_given_fetch_size() {
+        try(Stream<String> names = jdbcService.queryForStream("SELECT * FROM customer WHERE id > ? ORDER BY id", 1, rowMapper, 1)) {
+            assertEquals(Arrays.asList("Arya Stark", "Sansa Stark"), names.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void query_for_stream_should_only_read_the_rows_which_are_consumed() {
+        try(Stream<String> names = jdbcService.queryForStream("SELECT * FROM customer ORDER BY id", rowMapper)) {
+            assertEquals("Jon Snow", names.findFirst().orElse(null));
+        }
+    }
+
+    @Test
+    public void query_for_stream_inside_transaction_should_see_uncommitted_rows() {
+        transactionManager.doInTransaction(() -> {
+            jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 4, "Rickon Stark");
+            try(Stream<String> names = jdbcService.queryForStream("SELECT * FROM customer", rowMapper)) {
+                assertEquals(4, names.count());
+            }
+            jdbcService.update("DELETE FROM customer WHERE id = ?", 4);
+        });
+        assertEquals(3, jdbcService.queryForList("SELECT * FROM customer", rowMapper).size());
+    }
+
+    @Test
+    public void for_each_row_should_invoke_callback_for_every_row() {
+        final List<String> names = new ArrayList<>();
+        jdbcService.forEachRow("SELECT * FROM customer WHERE id <> ? ORDER BY id", 2, queryResult ->
+                names.add(queryResult.requireString("name")), 1
+        );
+        assertEquals(Arrays.asList("Arya Stark", "Sansa Stark"), names);
+    }
+
+    @Test
+    public void for_each_row_without_rows_should_not_invoke_callback() {
+        jdbcService.forEachRow("SELECT * FROM customer WHERE id = ?", queryResult -> {
+            throw new IllegalStateException("Callback should not be invoked");
+        }, 999);
+    }
+
+    @Test(expected = MalformedSqlException.class)
+    public void query_for_stream_with_malformed_sql_should_throw_expected_exception() {
+        jdbcService.queryForStream("asd", rowMapper);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void query_for_stream_with_null_sql_should_throw_expected_exception() {
+        jdbcService.queryForStream(null, rowMapper);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void query_for_stream_with_negative_fetch_size_should_throw_expected_exception() {
+        jdbcService.queryForStream("SELECT * FROM customer", -1, rowMapper);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void for_each_row_with_null_callback_should_throw_expected_exception() {
+        jdbcService.forEachRow("SELECT * FROM customer", null);
+    }
+
+}
@@ -5,6 +5,7 @@ import org.hsqldb.jdbc.JDBCDataSource;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
@@ -78,4 +79,55 @@ public class JdbcServiceTransactionTest {
         }
     }
 
+    @Test
+    public void error_inside_nested_transaction_should_only_roll_back_nested_work() {
+        transactionManager.doInTransaction(() -> {
+            jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 1, "Davos Seaworth");
+            try {
+                transactionManager.doInTransaction(Propagation.NESTED, () -> {
+                    jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Stannis Baratheon");
+                    throw new RuntimeException();
+                });
+            }
+            catch(RuntimeException ignored) {
+            }
+            jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 3, "Shireen Baratheon");
+        });
+        assertEquals(
+                Arrays.asList("Davos Seaworth", "Shireen Baratheon"),
+                jdbcService.queryForList("SELECT * FROM customer ORDER BY id", rowMapper)
+        );
+    }
+
+    @Test
+    public void successful_nested_transaction_should_be_committed_with_outer_transaction() {
+        transactionManager.doInTransaction(() -> {
+            jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 1, "Davos Seaworth");
+            transactionManager.doInTransaction(Propagation.NESTED, () ->
+                    jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Stannis Baratheon")
+            );
+        });
+        assertEquals(2, jdbcService.queryForList("SELECT * FROM customer", rowMapper).size());
+    }
+
+    @Test
+    public void read_only_transaction_should_read_but_not_write() {
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 1, "Melisandre");
+        final TransactionOptions readOnly = TransactionOptions.defaults()
+                .withReadOnly(true)
+                .withIsolation(Isolation.SERIALIZABLE);
+        assertEquals(1, transactionManager.doInTransaction(readOnly, () ->
+                jdbcService.queryForList("SELECT * FROM customer", rowMapper).size()
+        ).intValue());
+        try {
+            transactionManager.doInTransaction(readOnly, () ->
+                    jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Shireen Baratheon")
+            );
+        }
+        catch(RuntimeException e) {
+            // expected
+        }
+        assertEquals(1, jdbcService.queryForList("SELECT * FROM customer", rowMapper).size());
+    }
+
 }
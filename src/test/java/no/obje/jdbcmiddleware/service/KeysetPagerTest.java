@@ -0,0 +1,184 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class KeysetPagerTest {
+
+    private JDBCDataSource dataSource;
+    private JdbcService jdbcService;
+    private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTable(dataSource);
+        jdbcService = new JdbcService(dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void pages_should_hold_at_most_page_size_rows_in_key_order() {
+        insertCustomers(10);
+        final Iterator<List<Integer>> pages = jdbcService
+                .keysetPager("SELECT * FROM customer", result -> result.requireInt("id"), 3, "id")
+                .pages();
+        assertEquals(Arrays.asList(1, 2, 3), pages.next());
+        assertEquals(Arrays.asList(4, 5, 6), pages.next());
+        assertEquals(Arrays.asList(7, 8, 9), pages.next());
+        assertEquals(Collections.singletonList(10), pages.next());
+        assertFalse(pages.hasNext());
+    }
+
+    @Test
+    public void result_filling_last_page_should_end_with_empty_fetch() {
+        insertCustomers(6);
+        final List<List<Integer>> pages = new ArrayList<>();
+        jdbcService.keysetPager("SELECT * FROM customer", result -> result.requireInt("id"), 3, "id")
+                .pages()
+                .forEachRemaining(pages::add);
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6)), pages);
+    }
+
+    @Test
+    public void stream_should_return_every_row_matching_query_arguments() {
+        insertCustomers(25);
+        final List<Integer> ids = jdbcService
+                .keysetPager("SELECT * FROM customer WHERE id <> ?", result -> result.requireInt("id"), 4, "id", 13)
+                .stream()
+                .collect(Collectors.toList());
+        assertEquals(24, ids.size());
+        assertFalse(ids.contains(13));
+        assertEquals((Integer)25, ids.get(23));
+    }
+
+    @Test
+    public void collection_argument_should_be_expanded_before_seek_keys() {
+        insertCustomers(10);
+        final List<List<Integer>> pages = new ArrayList<>();
+        jdbcService.keysetPager(
+                "SELECT * FROM customer WHERE id IN (?) AND name <> ?",
+                result -> result.requireInt("id"),
+                2,
+                "id",
+                Arrays.asList(2, 3, 5, 7, 9),
+                "Customer 3"
+        ).pages().forEachRemaining(pages::add);
+        assertEquals(Arrays.asList(Arrays.asList(2, 5), Arrays.asList(7, 9)), pages);
+    }
+
+    @Test
+    public void composite_key_should_page_past_duplicate_leading_key_values() {
+        final List<Object[]> rows = new ArrayList<>();
+        for(int id = 1; id <= 9; id++) {
+            rows.add(new Object[] {id, id % 2 == 0 ? "Stark" : "Lannister"});
+        }
+        jdbcService.batchInsert("INSERT INTO customer (id, name) VALUES (?, ?)", rows, 10);
+        final List<String> customers = jdbcService
+                .keysetPager(
+                        "SELECT id, name FROM customer",
+                        result -> result.requireString("name") + " " + result.requireInt("id"),
+                        2,
+                        Arrays.asList("name", "id")
+                )
+                .stream()
+                .collect(Collectors.toList());
+        assertEquals(
+                Arrays.asList("Lannister 1", "Lannister 3", "Lannister 5", "Lannister 7", "Lannister 9",
+                        "Stark 2", "Stark 4", "Stark 6", "Stark 8"),
+                customers
+        );
+    }
+
+    @Test
+    public void prefetching_pager_should_return_same_pages() {
+        insertCustomers(50);
+        final List<Integer> ids = jdbcService
+                .keysetPager("SELECT * FROM customer", result -> result.requireInt("id"), 7, "id")
+                .withPrefetch(executor)
+                .stream()
+                .collect(Collectors.toList());
+        assertEquals(50, ids.size());
+        for(int i = 0; i < ids.size(); i++) {
+            assertEquals((Integer)(i + 1), ids.get(i));
+        }
+    }
+
+    @Test
+    public void next_page_sql_should_seek_past_last_key() {
+        final KeysetPager<String> pager = jdbcService.keysetPager(
+                "SELECT * FROM customer",
+                new MapCustomer(),
+                10,
+                Arrays.asList("name", "id")
+        );
+        assertEquals(
+                "SELECT * FROM (SELECT * FROM customer) keyset_page ORDER BY name, id FETCH FIRST ? ROWS ONLY",
+                pager.getFirstPageSql()
+        );
+        assertEquals(
+                "SELECT * FROM (SELECT * FROM customer) keyset_page WHERE (name > ?) OR (name = ? AND id > ?) ORDER BY name, id"
+                        + " FETCH FIRST ? ROWS ONLY",
+                pager.getNextPageSql()
+        );
+    }
+
+    @Test
+    public void pages_should_be_limited_in_sql_with_configured_row_limit_syntax() throws Exception {
+        final JdbcService limitService = new JdbcService(
+                new ConnectionManager(dataSource),
+                JdbcServiceConfig.defaults().withRowLimitSyntax(RowLimitSyntax.LIMIT)
+        );
+        insertCustomers(5);
+        final KeysetPager<Integer> pager = limitService.keysetPager(
+                "SELECT * FROM customer",
+                result -> result.requireInt("id"),
+                2,
+                "id"
+        );
+        assertTrue(pager.getFirstPageSql().endsWith(" ORDER BY id LIMIT ?"));
+        assertTrue(pager.getNextPageSql().endsWith(" ORDER BY id LIMIT ?"));
+        final List<List<Integer>> pages = new ArrayList<>();
+        pager.pages().forEachRemaining(pages::add);
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Collections.singletonList(5)), pages);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pager_with_non_positive_page_size_should_throw_expected_exception() {
+        jdbcService.keysetPager("SELECT * FROM customer", new MapCustomer(), 0, "id");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pager_without_key_columns_should_throw_expected_exception() {
+        jdbcService.keysetPager("SELECT * FROM customer", new MapCustomer(), 10, Collections.emptyList());
+    }
+
+    private void insertCustomers(int count) {
+        final List<Object[]> rows = new ArrayList<>();
+        for(int id = 1; id <= count; id++) {
+            rows.add(new Object[] {id, "Customer " + id});
+        }
+        jdbcService.batchInsert("INSERT INTO customer (id, name) VALUES (?, ?)", rows, 100);
+    }
+}
@@ -0,0 +1,65 @@
+package no.obje.jdbcmiddleware.service;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    private final RetryPolicy retryPolicy = RetryPolicy.defaults();
+
+    @Test
+    public void serialization_failures_and_deadlocks_should_be_transient() {
+        assertTrue(retryPolicy.isTransient(new SQLException("could not serialize access", "40001")));
+        assertTrue(retryPolicy.isTransient(new SQLException("deadlock detected", "40P01")));
+        assertTrue(retryPolicy.isTransient(new SQLTransactionRollbackException("rolled back")));
+        assertTrue(retryPolicy.isTransient(new RuntimeException(new RuntimeException(new SQLException("", "40001")))));
+    }
+
+    @Test
+    public void other_failures_should_not_be_transient() {
+        assertFalse(retryPolicy.isTransient(new SQLException("unique constraint violated", "23505")));
+        assertFalse(retryPolicy.isTransient(new SQLException("no state")));
+        assertFalse(retryPolicy.isTransient(new IllegalStateException()));
+    }
+
+    @Test
+    public void integrity_violation_and_unknown_completion_should_not_be_transient() {
+        assertFalse(retryPolicy.isTransient(new SQLException("integrity constraint violation", "40002")));
+        assertFalse(retryPolicy.isTransient(new SQLException("statement completion unknown", "40003")));
+        assertFalse(retryPolicy.isTransient(new SQLTransactionRollbackException("completion unknown", "40003")));
+    }
+
+    @Test
+    public void vendor_error_codes_should_only_be_transient_when_configured() {
+        final SQLException deadlock = new SQLException("ORA-00060: deadlock detected", "61000", 60);
+        assertFalse(retryPolicy.isTransient(deadlock));
+        assertFalse(retryPolicy.isTransient(new SQLException("numeric overflow", "22000", 60)));
+        assertTrue(retryPolicy.withTransientErrorCodes(60, 8177).isTransient(deadlock));
+    }
+
+    @Test
+    public void backoff_should_be_bounded_by_doubling_initial_backoff_and_max_backoff() {
+        final RetryPolicy retryPolicy = RetryPolicy.defaults()
+                .withInitialBackoff(Duration.ofMillis(10))
+                .withMaxBackoff(Duration.ofMillis(50));
+        for(int i = 0; i < 100; i++) {
+            assertTrue(retryPolicy.backoffNanos(1) <= TimeUnit.MILLISECONDS.toNanos(10));
+            assertTrue(retryPolicy.backoffNanos(2) <= TimeUnit.MILLISECONDS.toNanos(20));
+            assertTrue(retryPolicy.backoffNanos(10) <= TimeUnit.MILLISECONDS.toNanos(50));
+            assertTrue(retryPolicy.backoffNanos(100) >= 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void non_positive_max_attempts_should_throw_expected_exception() {
+        RetryPolicy.defaults().withMaxAttempts(0);
+    }
+
+}
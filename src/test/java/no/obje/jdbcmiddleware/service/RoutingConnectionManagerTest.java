@@ -0,0 +1,203 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.HsqlUtil;
+import no.obje.jdbcmiddleware.metrics.QueryListener;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class RoutingConnectionManagerTest {
+
+    private JdbcService jdbcService;
+    private TransactionManager transactionManager;
+    private MapCustomer rowMapper = new MapCustomer();
+
+    @Before
+    public void setUp() throws Exception {
+        final JDBCDataSource primary = HsqlUtil.setupDataSource();
+        HsqlUtil.createCustomerTable(primary);
+        final JDBCDataSource replica = HsqlUtil.setupDataSource("replica");
+        HsqlUtil.createCustomerTableAndInsertJonSnow(replica);
+        final ConnectionManager connectionManager =
+                new RoutingConnectionManager(primary, Collections.singletonList(replica));
+        transactionManager = new TransactionManager(connectionManager);
+        jdbcService = new JdbcService(connectionManager);
+    }
+
+    @Test
+    public void query_outside_of_transaction_should_read_from_replica() {
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Robb Stark");
+        final List<String> customers = jdbcService.queryForList("SELECT * FROM customer", rowMapper);
+        assertEquals(1, customers.size());
+        assertEquals("Jon Snow", customers.get(0));
+    }
+
+    @Test
+    public void query_inside_of_transaction_should_read_from_primary() {
+        final List<String> customers = transactionManager.doInTransaction(() -> {
+            jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Robb Stark");
+            return jdbcService.queryForList("SELECT * FROM customer", rowMapper);
+        });
+        assertEquals(1, customers.size());
+        assertEquals("Robb Stark", customers.get(0));
+    }
+
+    @Test
+    public void read_only_transaction_should_read_from_replica() {
+        jdbcService.insert("INSERT INTO customer (id, name) VALUES (?, ?)", 2, "Robb Stark");
+        final List<String> customers = transactionManager.doInTransaction(
+                TransactionOptions.defaults().withReadOnly(true),
+                () -> jdbcService.queryForList("SELECT * FROM customer", rowMapper)
+        );
+        assertEquals("Jon Snow", customers.get(0));
+    }
+
+    @Test
+    public void reads_should_go_to_replica_with_fewest_connections_in_use() throws SQLException {
+        final DataSource first = mockDataSource();
+        final DataSource second = mockDataSource();
+        final RoutingConnectionManager connectionManager =
+                new RoutingConnectionManager(mockDataSource(), Arrays.asList(first, second));
+        final Connection held = connectionManager.acquireReadConnection();
+        final Connection next = connectionManager.acquireReadConnection();
+        connectionManager.releaseConnection(held);
+        connectionManager.releaseConnection(next);
+        verify(first, times(1)).getConnection();
+        verify(second, times(1)).getConnection();
+    }
+
+    @Test
+    public void failing_replica_should_be_ejected_and_reads_fall_back_to_primary() throws SQLException {
+        final Connection primaryConnection = mock(Connection.class);
+        final DataSource primary = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        final DataSource replica = mock(DataSource.class);
+        when(replica.getConnection()).thenThrow(new SQLException("Connection refused", "08001"));
+        final RoutingConnectionManager connectionManager = new RoutingConnectionManager(
+                primary,
+                Collections.singletonList(replica),
+                QueryListener.NONE,
+                RoutingConfig.defaults().withMaxFailures(2).withEjectionTime(Duration.ofMinutes(1))
+        );
+        for(int i = 0; i < 3; i++) {
+            final Connection connection = connectionManager.acquireReadConnection();
+            assertSame(primaryConnection, connection);
+            connectionManager.releaseConnection(connection);
+        }
+        verify(replica, times(2)).getConnection();
+        assertEquals(0, connectionManager.getAvailableReplicaCount());
+    }
+
+    @Test
+    public void writes_should_go_to_primary() throws SQLException {
+        final DataSource primary = mockDataSource();
+        final DataSource replica = mockDataSource();
+        final RoutingConnectionManager connectionManager =
+                new RoutingConnectionManager(primary, Collections.singletonList(replica));
+        connectionManager.doWithConnection(connection -> connection);
+        verify(primary, times(1)).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    private static DataSource mockDataSource() throws SQLException {
+        final DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        return dataSource;
+    }
+
+    @Test
+    public void replica_whose_connections_fail_should_be_ejected_after_max_failures() throws SQLException {
+        final Connection failingConnection = mock(Connection.class);
+        when(failingConnection.prepareStatement(anyString()))
+                .thenThrow(new SQLException("Communications link failure", "08S01"));
+        final DataSource replica = mock(DataSource.class);
+        when(replica.getConnection()).thenReturn(failingConnection);
+        final RoutingConnectionManager connectionManager = new RoutingConnectionManager(
+                mockDataSource(),
+                Collections.singletonList(replica),
+                QueryListener.NONE,
+                RoutingConfig.defaults().withMaxFailures(3).withEjectionTime(Duration.ofMinutes(1))
+        );
+        for(int i = 0; i < 5; i++) {
+            final Connection connection = connectionManager.acquireReadConnection();
+            try {
+                connection.prepareStatement("SELECT * FROM customer");
+            }
+            catch(SQLException e) {
+                // expected for connections of the replica
+            }
+            finally {
+                connectionManager.releaseConnection(connection);
+            }
+        }
+        verify(replica, times(3)).getConnection();
+        assertEquals(0, connectionManager.getAvailableReplicaCount());
+    }
+
+    @Test
+    public void statement_failures_should_count_against_replica() throws SQLException {
+        final PreparedStatement failingStatement = mock(PreparedStatement.class);
+        when(failingStatement.executeQuery()).thenThrow(new SQLException("Connection reset", "08006"));
+        final Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(failingStatement);
+        final DataSource replica = mock(DataSource.class);
+        when(replica.getConnection()).thenReturn(connection);
+        final RoutingConnectionManager connectionManager = new RoutingConnectionManager(
+                mockDataSource(),
+                Collections.singletonList(replica),
+                QueryListener.NONE,
+                RoutingConfig.defaults().withMaxFailures(1)
+        );
+        try {
+            new JdbcService(connectionManager).queryForList("SELECT * FROM customer", rowMapper);
+        }
+        catch(RuntimeException e) {
+            assertEquals(0, connectionManager.getAvailableReplicaCount());
+            return;
+        }
+        throw new AssertionError("Expected query to fail");
+    }
+
+    @Test
+    public void connection_closed_without_failure_should_clear_failures_of_replica() throws SQLException {
+        final Connection failingConnection = mock(Connection.class);
+        when(failingConnection.prepareStatement(anyString()))
+                .thenThrow(new SQLException("Communications link failure", "08S01"));
+        final DataSource replica = mock(DataSource.class);
+        when(replica.getConnection()).thenReturn(failingConnection, mock(Connection.class), failingConnection);
+        final RoutingConnectionManager connectionManager = new RoutingConnectionManager(
+                mockDataSource(),
+                Collections.singletonList(replica),
+                QueryListener.NONE,
+                RoutingConfig.defaults().withMaxFailures(2)
+        );
+        for(int i = 0; i < 3; i++) {
+            final Connection connection = connectionManager.acquireReadConnection();
+            try {
+                connection.prepareStatement("SELECT * FROM customer");
+            }
+            catch(SQLException e) {
+                // expected for failing connections
+            }
+            finally {
+                connectionManager.releaseConnection(connection);
+            }
+        }
+        assertEquals(1, connectionManager.getAvailableReplicaCount());
+    }
+
+}
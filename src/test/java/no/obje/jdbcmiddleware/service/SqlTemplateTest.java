@@ -0,0 +1,96 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.domain.ParameterSource;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class SqlTemplateTest {
+
+    @Test
+    public void parse_named_should_replace_named_parameters_with_positional_parameters() {
+        final SqlTemplate sqlTemplate = SqlTemplate.parseNamed("SELECT * FROM customer WHERE id = :id AND name = :name OR id = :id");
+        assertEquals("SELECT * FROM customer WHERE id = ? AND name = ? OR id = ?", sqlTemplate.getSql());
+        assertEquals(Arrays.asList("id", "name", "id"), sqlTemplate.getParameterNames());
+    }
+
+    @Test
+    public void parse_named_should_ignore_literals_comments_and_casts() {
+        final SqlTemplate sqlTemplate = SqlTemplate.parseNamed(
+                "SELECT ':literal', \"col:umn\", id::text -- :comment\n FROM customer /* :block */ WHERE name = :name"
+        );
+        assertEquals(
+                "SELECT ':literal', \"col:umn\", id::text -- :comment\n FROM customer /* :block */ WHERE name = ?",
+                sqlTemplate.getSql()
+        );
+        assertEquals(Collections.singletonList("name"), sqlTemplate.getParameterNames());
+    }
+
+    @Test
+    public void parse_named_should_handle_escaped_quotes() {
+        final SqlTemplate sqlTemplate = SqlTemplate.parseNamed("SELECT 'It''s :not' FROM customer WHERE id = :id");
+        assertEquals("SELECT 'It''s :not' FROM customer WHERE id = ?", sqlTemplate.getSql());
+    }
+
+    @Test
+    public void parse_positional_should_ignore_question_marks_in_literals() {
+        final SqlTemplate sqlTemplate = SqlTemplate.parsePositional("SELECT '?' FROM customer WHERE id IN (?) AND name = ?");
+        final List<SqlTemplate.Expansion> expansions = sqlTemplate.expand(new Object[] {Arrays.asList(1, 2), "Hodor"}, 100, ArgumentBinders.defaults());
+        assertEquals("SELECT '?' FROM customer WHERE id IN (?, ?) AND name = ?", expansions.get(0).getSql());
+    }
+
+    @Test
+    public void collection_argument_should_be_padded_to_power_of_two_with_last_value() {
+        final SqlTemplate sqlTemplate = SqlTemplate.parsePositional("SELECT * FROM customer WHERE id IN (?) AND name <> ?");
+        final List<SqlTemplate.Expansion> expansions = sqlTemplate.expand(new Object[] {Arrays.asList(1, 2, 3), "Hodor"}, 100, ArgumentBinders.defaults());
+        assertEquals(1, expansions.size());
+        assertEquals("SELECT * FROM customer WHERE id IN (?, ?, ?, ?) AND name <> ?", expansions.get(0).getSql());
+        assertArrayEquals(new Object[] {1, 2, 3, 3, "Hodor"}, expansions.get(0).getArgs());
+    }
+
+    @Test
+    public void collection_argument_exceeding_max_parameters_should_be_split_into_chunks() {
+        final List<Integer> ids = new ArrayList<>();
+        for(int id = 1; id <= 20; id++) {
+            ids.add(id);
+        }
+        final SqlTemplate sqlTemplate = SqlTemplate.parsePositional("SELECT * FROM customer WHERE name <> ? AND id IN (?)");
+        final List<SqlTemplate.Expansion> expansions = sqlTemplate.expand(new Object[] {"Hodor", ids}, 10, ArgumentBinders.defaults());
+        assertEquals(3, expansions.size());
+        assertEquals(9, expansions.get(0).getArgs().length);
+        assertEquals(9, expansions.get(1).getArgs().length);
+        assertArrayEquals(new Object[] {"Hodor", 17, 18, 19, 20}, expansions.get(2).getArgs());
+    }
+
+    @Test
+    public void bucket_size_should_be_next_power_of_two() {
+        assertEquals(1, SqlTemplate.bucketSize(1));
+        assertEquals(2, SqlTemplate.bucketSize(2));
+        assertEquals(4, SqlTemplate.bucketSize(3));
+        assertEquals(8, SqlTemplate.bucketSize(8));
+        assertEquals(8192, SqlTemplate.bucketSize(5000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missing_parameter_value_should_throw_expected_exception() {
+        SqlTemplate.parseNamed("SELECT * FROM customer WHERE id = :id").values(ParameterSource.of(Collections.emptyMap()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void empty_collection_argument_should_throw_expected_exception() {
+        SqlTemplate.parsePositional("SELECT * FROM customer WHERE id IN (?)").expand(new Object[] {Collections.emptyList()}, 100, ArgumentBinders.defaults());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void several_collection_arguments_exceeding_max_parameters_should_throw_expected_exception() {
+        SqlTemplate.parsePositional("SELECT * FROM customer WHERE id IN (?) OR id IN (?)")
+                .expand(new Object[] {Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6)}, 6, ArgumentBinders.defaults());
+    }
+}
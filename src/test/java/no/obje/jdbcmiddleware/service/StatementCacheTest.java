@@ -0,0 +1,126 @@
+package no.obje.jdbcmiddleware.service;
+
+import no.obje.jdbcmiddleware.pool.PoolConfig;
+import no.obje.jdbcmiddleware.pool.PooledDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+public class StatementCacheTest {
+
+    private StatementCache statementCache;
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        statementCache = new StatementCache(2);
+        connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> mockStatement());
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenAnswer(invocation -> mockStatement());
+    }
+
+    @Test
+    public void released_statement_should_be_reused_for_same_sql() throws SQLException {
+        final PreparedStatement first = statementCache.prepareStatement(connection, "SELECT 1", Statement.NO_GENERATED_KEYS);
+        statementCache.release(first);
+        final PreparedStatement second = statementCache.prepareStatement(connection, "SELECT 1", Statement.NO_GENERATED_KEYS);
+        assertSame(first, second);
+        assertEquals(1, statementCache.getHitCount());
+        assertEquals(1, statementCache.getMissCount());
+        verify(first, never()).close();
+        verify(first, times(1)).clearParameters();
+    }
+
+    @Test
+    public void statements_with_different_generated_keys_flag_should_not_be_shared() throws SQLException {
+        final PreparedStatement plain = statementCache.prepareStatement(connection, "INSERT", Statement.NO_GENERATED_KEYS);
+        statementCache.release(plain);
+        final PreparedStatement withKeys = statementCache.prepareStatement(connection, "INSERT", Statement.RETURN_GENERATED_KEYS);
+        assertNotSame(plain, withKeys);
+        assertEquals(2, statementCache.getMissCount());
+    }
+
+    @Test
+    public void statement_in_use_should_not_be_handed_out_twice() throws SQLException {
+        final PreparedStatement outer = statementCache.prepareStatement(connection, "SELECT 1", Statement.NO_GENERATED_KEYS);
+        final PreparedStatement inner = statementCache.prepareStatement(connection, "SELECT 1", Statement.NO_GENERATED_KEYS);
+        assertNotSame(outer, inner);
+        statementCache.release(inner);
+        verify(inner, times(1)).close();
+        statementCache.release(outer);
+        verify(outer, never()).close();
+    }
+
+    @Test
+    public void least_recently_used_statement_should_be_evicted_and_closed() throws SQLException {
+        final PreparedStatement first = statementCache.prepareStatement(connection, "SELECT 1", Statement.NO_GENERATED_KEYS);
+        statementCache.release(first);
+        statementCache.release(statementCache.prepareStatement(connection, "SELECT 2", Statement.NO_GENERATED_KEYS));
+        statementCache.release(statementCache.prepareStatement(connection, "SELECT 3", Statement.NO_GENERATED_KEYS));
+        verify(first, times(1)).close();
+        assertEquals(1, statementCache.getEvictionCount());
+    }
+
+    @Test
+    public void statements_of_closed_connections_should_be_discarded() throws SQLException {
+        final PreparedStatement statement = statementCache.prepareStatement(connection, "SELECT 1", Statement.NO_GENERATED_KEYS);
+        statementCache.release(statement);
+        when(connection.isClosed()).thenReturn(true);
+
+        final Connection otherConnection = mock(Connection.class);
+        when(otherConnection.prepareStatement(anyString())).thenAnswer(invocation -> mockStatement());
+        statementCache.prepareStatement(otherConnection, "SELECT 1", Statement.NO_GENERATED_KEYS);
+
+        verify(statement, times(1)).close();
+    }
+
+    @Test
+    public void invalidating_a_connection_should_close_its_statements() throws SQLException {
+        final PreparedStatement statement = statementCache.prepareStatement(connection, "SELECT 1", Statement.NO_GENERATED_KEYS);
+        statementCache.release(statement);
+        statementCache.invalidate(connection);
+        verify(statement, times(1)).close();
+        assertNotSame(statement, statementCache.prepareStatement(connection, "SELECT 1", Statement.NO_GENERATED_KEYS));
+    }
+
+    @Test
+    public void connection_retired_by_pool_should_have_its_statements_closed() throws Exception {
+        final DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        try(PooledDataSource pool = new PooledDataSource(
+                dataSource,
+                PoolConfig.defaults().withMinSize(0).withMaxLifetime(Duration.ofMillis(1))
+        )) {
+            pool.addRetireListener(statementCache::invalidate);
+            final Connection pooledConnection = pool.getConnection();
+            final PreparedStatement statement = statementCache.prepareStatement(pooledConnection, "SELECT 1", Statement.NO_GENERATED_KEYS);
+            statementCache.release(statement);
+            Thread.sleep(5);
+            pooledConnection.close();
+            verify(statement, times(1)).close();
+            verify(connection, times(1)).close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void non_positive_size_should_throw_expected_exception() {
+        new StatementCache(0);
+    }
+
+    private PreparedStatement mockStatement() throws SQLException {
+        final PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.getConnection()).thenReturn(connection);
+        return statement;
+    }
+}
@@ -0,0 +1,49 @@
+package no.obje.jdbcmiddleware.service;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class StatementTimeoutTest {
+
+    @Test
+    public void closed_timeout_should_never_cancel_statement() throws Exception {
+        final Statement statement = mock(Statement.class);
+        final StatementTimeout timeout = StatementTimeout.start(statement, TimeUnit.MILLISECONDS.toNanos(20));
+        timeout.close();
+        Thread.sleep(60);
+        verify(statement, never()).cancel();
+        assertFalse(timeout.isTimeout(new RuntimeException()));
+    }
+
+    @Test
+    public void close_should_wait_for_cancellation_in_progress() throws Exception {
+        final Statement statement = mock(Statement.class);
+        final CountDownLatch cancelling = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            cancelling.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(statement).cancel();
+        final StatementTimeout timeout = StatementTimeout.start(statement, 1);
+        assertTrue(cancelling.await(5, TimeUnit.SECONDS));
+        final CountDownLatch closed = new CountDownLatch(1);
+        new Thread(() -> {
+            timeout.close();
+            closed.countDown();
+        }).start();
+        assertFalse(closed.await(50, TimeUnit.MILLISECONDS));
+        proceed.countDown();
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertTrue(timeout.isTimeout(new SQLException("canceled")));
+    }
+
+}
@@ -3,11 +3,21 @@ package no.obje.jdbcmiddleware.service;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class TransactionManagerTest {
 
+    private static final TransactionOptions RETRYING = TransactionOptions.defaults()
+            .withRetryPolicy(RetryPolicy.defaults().withInitialBackoff(Duration.ofMillis(1)));
+
     private TransactionManager transactionManager;
     private ConnectionManager connectionManager;
 
@@ -20,7 +30,7 @@ public class TransactionManagerTest {
     @Test
     public void do_runnable_should_invoke_connection_manager() {
         transactionManager.doInTransaction(() -> System.out.println("Do something"));
-        verify(connectionManager, times(1)).startTransaction();
+        verify(connectionManager, times(1)).startTransaction(TransactionOptions.defaults());
         verify(connectionManager, times(1)).commitTransaction();
     }
 
@@ -28,7 +38,7 @@ public class TransactionManagerTest {
     public void do_callable_should_return_expected_result_and_invoke_connection_manager() {
         Integer result = transactionManager.doInTransaction(() -> 1 + 1);
         assertEquals((Integer)2, result);
-        verify(connectionManager, times(1)).startTransaction();
+        verify(connectionManager, times(1)).startTransaction(TransactionOptions.defaults());
         verify(connectionManager, times(1)).commitTransaction();
     }
 
@@ -40,7 +50,7 @@ public class TransactionManagerTest {
             });
         }
         catch(RuntimeException e) {
-            verify(connectionManager, times(1)).startTransaction();
+            verify(connectionManager, times(1)).startTransaction(TransactionOptions.defaults());
             verify(connectionManager, times(1)).rollbackTransaction();
         }
     }
@@ -57,7 +67,7 @@ public class TransactionManagerTest {
             });
         }
         catch(RuntimeException e) {
-            verify(connectionManager, times(1)).startTransaction();
+            verify(connectionManager, times(1)).startTransaction(TransactionOptions.defaults());
             verify(connectionManager, times(1)).rollbackTransaction();
         }
     }
@@ -68,7 +78,7 @@ public class TransactionManagerTest {
             when(connectionManager.isTransactionInProgress()).thenReturn(true);
             transactionManager.doInTransaction(() -> System.out.println("Something"));
         });
-        verify(connectionManager, times(1)).startTransaction();
+        verify(connectionManager, times(1)).startTransaction(TransactionOptions.defaults());
         verify(connectionManager, times(2)).isTransactionInProgress();
         verify(connectionManager, times(1)).commitTransaction();
     }
@@ -80,9 +90,145 @@ public class TransactionManagerTest {
             return transactionManager.doInTransaction(() -> 1 + 1);
         });
         assertEquals((Integer)2, result);
-        verify(connectionManager, times(1)).startTransaction();
+        verify(connectionManager, times(1)).startTransaction(TransactionOptions.defaults());
         verify(connectionManager, times(2)).isTransactionInProgress();
         verify(connectionManager, times(1)).commitTransaction();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void nested_callable_inside_transaction_should_use_savepoint() {
+        final Savepoint savepoint = mock(Savepoint.class);
+        when(connectionManager.isTransactionInProgress()).thenReturn(true);
+        when(connectionManager.setSavepoint()).thenReturn(savepoint);
+        final Integer result = transactionManager.doInTransaction(Propagation.NESTED, () -> 1 + 1);
+        assertEquals((Integer)2, result);
+        verify(connectionManager, times(1)).releaseSavepoint(savepoint);
+        verify(connectionManager, never()).startTransaction(any(TransactionOptions.class));
+        verify(connectionManager, never()).commitTransaction();
+    }
+
+    @Test
+    public void exception_during_nested_runnable_should_only_rollback_to_savepoint() {
+        final Savepoint savepoint = mock(Savepoint.class);
+        when(connectionManager.isTransactionInProgress()).thenReturn(true);
+        when(connectionManager.setSavepoint()).thenReturn(savepoint);
+        try {
+            transactionManager.doInTransaction(Propagation.NESTED, (Runnable)() -> {
+                throw new IllegalStateException();
+            });
+        }
+        catch(RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            verify(connectionManager, times(1)).rollbackToSavepoint(savepoint);
+            verify(connectionManager, never()).rollbackTransaction();
+            return;
+        }
+        throw new AssertionError("Expected nested runnable to fail");
+    }
+
+    @Test
+    public void nested_runnable_without_transaction_should_start_transaction() {
+        transactionManager.doInTransaction(Propagation.NESTED, () -> System.out.println("Do something"));
+        verify(connectionManager, times(1)).startTransaction(any(TransactionOptions.class));
+        verify(connectionManager, times(1)).commitTransaction();
+        verify(connectionManager, never()).setSavepoint();
+    }
+
+    @Test
+    public void transaction_should_start_with_default_options_of_transaction_manager() {
+        final TransactionOptions lazy = TransactionOptions.defaults().withLazyConnection(true);
+        new TransactionManager(connectionManager, lazy).doInTransaction(() -> System.out.println("Do something"));
+        verify(connectionManager, times(1)).startTransaction(lazy);
+    }
+
+    @Test
+    public void exception_during_transaction_should_be_kept_as_cause() {
+        final IllegalStateException failure = new IllegalStateException();
+        try {
+            transactionManager.doInTransaction((Runnable)() -> {
+                throw failure;
+            });
+        }
+        catch(RuntimeException e) {
+            assertSame(failure, e.getCause());
+            return;
+        }
+        throw new AssertionError("Expected transaction to fail");
+    }
+
+    @Test
+    public void transaction_failing_on_serialization_failure_should_be_retried() {
+        final AtomicInteger attempts = new AtomicInteger();
+        final Integer result = transactionManager.doInTransaction(RETRYING, () -> {
+            if(attempts.incrementAndGet() == 1) {
+                throw new RuntimeException(new SQLException("could not serialize access", "40001"));
+            }
+            return 1 + 1;
+        });
+        assertEquals((Integer)2, result);
+        verify(connectionManager, times(2)).startTransaction(RETRYING);
+        verify(connectionManager, times(1)).rollbackTransaction();
+        verify(connectionManager, times(1)).commitTransaction();
+        assertEquals(1, transactionManager.getRetryCount());
+    }
+
+    @Test
+    public void transaction_failing_on_commit_with_deadlock_should_be_retried() {
+        doThrow(new RuntimeException("Unable to commit transaction", new SQLException("deadlock detected", "40P01")))
+                .doNothing()
+                .when(connectionManager).commitTransaction();
+        transactionManager.doInTransaction(RETRYING, () -> System.out.println("Do something"));
+        verify(connectionManager, times(2)).startTransaction(RETRYING);
+        verify(connectionManager, times(2)).commitTransaction();
+    }
+
+    @Test
+    public void transaction_failing_on_other_exception_should_not_be_retried() {
+        try {
+            transactionManager.doInTransaction(RETRYING, (Runnable)() -> {
+                throw new RuntimeException(new SQLException("syntax error", "42000"));
+            });
+        }
+        catch(RuntimeException e) {
+            verify(connectionManager, times(1)).startTransaction(RETRYING);
+            assertEquals(0, transactionManager.getRetryCount());
+            return;
+        }
+        throw new AssertionError("Expected transaction to fail");
+    }
+
+    @Test
+    public void transaction_failing_on_every_attempt_should_give_up_after_max_attempts() {
+        try {
+            transactionManager.doInTransaction(RETRYING, (Runnable)() -> {
+                throw new RuntimeException(new SQLException("could not serialize access", "40001"));
+            });
+        }
+        catch(RuntimeException e) {
+            assertTrue(RETRYING.getRetryPolicy().isTransient(e));
+            verify(connectionManager, times(3)).startTransaction(RETRYING);
+            verify(connectionManager, times(3)).rollbackTransaction();
+            assertEquals(2, transactionManager.getRetryCount());
+            assertEquals(1, transactionManager.getRetriesExhaustedCount());
+            return;
+        }
+        throw new AssertionError("Expected transaction to fail");
+    }
+
+    @Test
+    public void joined_transaction_should_not_be_retried() {
+        when(connectionManager.isTransactionInProgress()).thenReturn(true);
+        try {
+            transactionManager.doInTransaction(RETRYING, (Runnable)() -> {
+                throw new RuntimeException(new SQLException("could not serialize access", "40001"));
+            });
+        }
+        catch(RuntimeException e) {
+            verify(connectionManager, never()).startTransaction(any(TransactionOptions.class));
+            assertEquals(0, transactionManager.getRetryCount());
+            return;
+        }
+        throw new AssertionError("Expected transaction to fail");
+    }
+
+}